@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import android.app.UiAutomation;
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityEvent;
+
+import androidx.test.uiautomator.BySelector;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks accessibility events so that waits re-check the hierarchy and caches
+ * are dropped only when something on screen changed, and pushes change
+ * notifications to subscribed connections.
+ *
+ * UiAutomation supports a single listener, so this replaces the one installed
+ * by UiAutomator's QueryController. That only feeds
+ * UiDevice.getLastTraversedText(), which the driver doesn't use.
+ */
+class AccessibilityEvents implements UiAutomation.OnAccessibilityEventListener {
+  // Some changes don't produce events, never sleep longer than this between checks.
+  private static final long MAX_EVENT_WAIT_MS = 1000;
+
+  private static final int WINDOW_EVENTS = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED | AccessibilityEvent.TYPE_WINDOWS_CHANGED;
+  private static final int CONTENT_EVENTS = WINDOW_EVENTS | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED | AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED;
+
+  private static class Subscription {
+    final DriverConnection connection;
+    final BySelector selector;
+    String lastText;
+
+    Subscription(DriverConnection connection, BySelector selector) {
+      this.connection = connection;
+      this.selector = selector;
+    }
+  }
+
+  private final UiDevice device;
+  private final Map<Integer, Subscription> subscriptions = new ConcurrentHashMap<>();
+  private final AtomicInteger lastSubscriptionId = new AtomicInteger();
+  // Selector checks query the hierarchy, keep them off the event delivery thread.
+  private final ExecutorService notifier = Executors.newSingleThreadExecutor();
+  private final AtomicBoolean textCheckPending = new AtomicBoolean();
+  private long generation;
+
+  AccessibilityEvents(UiDevice device) {
+    this.device = device;
+  }
+
+  @Override
+  public void onAccessibilityEvent(AccessibilityEvent event) {
+    // Any event may reflect a hierarchy change, cached reads must not outlive it.
+    invalidate();
+    int type = event.getEventType();
+    if ((type & CONTENT_EVENTS) == 0 || subscriptions.isEmpty())
+      return;
+    if ((type & WINDOW_EVENTS) != 0) {
+      // The event is recycled once this callback returns, copy what we need.
+      String eventType = AccessibilityEvent.eventTypeToString(type);
+      CharSequence pkg = event.getPackageName();
+      CharSequence clazz = event.getClassName();
+      notifier.execute(() -> notifyWindowChanged(eventType, pkg, clazz));
+    }
+    if (textCheckPending.compareAndSet(false, true))
+      notifier.execute(this::checkTextSubscriptions);
+  }
+
+  synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * Starts a new generation, used when the driver itself is about to change the screen.
+   */
+  synchronized void invalidate() {
+    ++generation;
+    notifyAll();
+  }
+
+  /**
+   * Blocks until an event arrives after the given generation or the timeout expires.
+   */
+  synchronized void awaitChange(long seenGeneration, long timeout) throws InterruptedException {
+    long deadline = SystemClock.uptimeMillis() + Math.min(timeout, MAX_EVENT_WAIT_MS);
+    while (generation == seenGeneration) {
+      long remaining = deadline - SystemClock.uptimeMillis();
+      if (remaining <= 0)
+        return;
+      wait(remaining);
+    }
+  }
+
+  UiObject2 waitForObject(BySelector selector, long timeout) {
+    long deadline = SystemClock.uptimeMillis() + timeout;
+    while (true) {
+      PendingCommand.checkCancelled();
+      long seenGeneration = generation();
+      UiObject2 result = device.findObject(selector);
+      if (result != null)
+        return result;
+      long remaining = deadline - SystemClock.uptimeMillis();
+      if (remaining <= 0)
+        return null;
+      try {
+        awaitChange(seenGeneration, remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while waiting for selector");
+      }
+    }
+  }
+
+  /**
+   * Subscribes the connection to window changes, or to text changes of the
+   * object matching the selector when one is given.
+   */
+  int subscribe(DriverConnection connection, BySelector selector) {
+    Subscription subscription = new Subscription(connection, selector);
+    if (selector != null)
+      subscription.lastText = textOf(selector);
+    int id = lastSubscriptionId.incrementAndGet();
+    subscriptions.put(id, subscription);
+    return id;
+  }
+
+  boolean unsubscribe(DriverConnection connection, int id) {
+    Subscription subscription = subscriptions.get(id);
+    if (subscription == null || subscription.connection != connection)
+      return false;
+    return subscriptions.remove(id) != null;
+  }
+
+  void unsubscribeAll(DriverConnection connection) {
+    Iterator<Subscription> it = subscriptions.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().connection == connection)
+        it.remove();
+    }
+  }
+
+  /**
+   * Stops the notifier thread. Detach the listener first, so that no event
+   * arrives after this.
+   */
+  void shutdown() {
+    subscriptions.clear();
+    notifier.shutdownNow();
+  }
+
+  private void notifyWindowChanged(String eventType, CharSequence pkg, CharSequence clazz) {
+    for (Map.Entry<Integer, Subscription> entry : subscriptions.entrySet()) {
+      if (entry.getValue().selector != null)
+        continue;
+      try {
+        JSONObject params = new JSONObject();
+        params.put("subscription", entry.getKey());
+        params.put("eventType", eventType);
+        params.put("pkg", pkg);
+        params.put("clazz", clazz);
+        entry.getValue().connection.writeEvent("windowChanged", params);
+      } catch (JSONException | IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  private void checkTextSubscriptions() {
+    textCheckPending.set(false);
+    for (Map.Entry<Integer, Subscription> entry : subscriptions.entrySet()) {
+      Subscription subscription = entry.getValue();
+      if (subscription.selector == null)
+        continue;
+      String text = textOf(subscription.selector);
+      if (Objects.equals(text, subscription.lastText))
+        continue;
+      subscription.lastText = text;
+      try {
+        JSONObject params = new JSONObject();
+        params.put("subscription", entry.getKey());
+        params.put("text", text == null ? JSONObject.NULL : text);
+        subscription.connection.writeEvent("textChanged", params);
+      } catch (JSONException | IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  private String textOf(BySelector selector) {
+    try {
+      UiObject2 object = device.findObject(selector);
+      return object != null ? object.getText() : null;
+    } catch (RuntimeException e) {
+      // The object went stale while being read, report it as gone.
+      return null;
+    }
+  }
+}
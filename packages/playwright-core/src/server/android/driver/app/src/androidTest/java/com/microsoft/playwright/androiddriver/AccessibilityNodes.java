@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import android.graphics.Rect;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * Exposes platform accessibility nodes to the tree serializers.
+ */
+class AccessibilityNodes implements A11yNodes<AccessibilityNodeInfo> {
+  static final AccessibilityNodes INSTANCE = new AccessibilityNodes();
+
+  private AccessibilityNodes() {
+  }
+
+  @Override
+  public int getChildCount(AccessibilityNodeInfo node) {
+    return node.getChildCount();
+  }
+
+  @Override
+  public AccessibilityNodeInfo getChild(AccessibilityNodeInfo node, int index) {
+    return node.getChild(index);
+  }
+
+  @Override
+  public void recycle(AccessibilityNodeInfo node) {
+    node.recycle();
+  }
+
+  @Override
+  public void getBounds(AccessibilityNodeInfo node, int[] bounds) {
+    Rect rect = new Rect();
+    node.getBoundsInScreen(rect);
+    bounds[0] = rect.left;
+    bounds[1] = rect.top;
+    bounds[2] = rect.right;
+    bounds[3] = rect.bottom;
+  }
+
+  @Override
+  public CharSequence getContentDescription(AccessibilityNodeInfo node) {
+    return node.getContentDescription();
+  }
+
+  @Override
+  public CharSequence getViewIdResourceName(AccessibilityNodeInfo node) {
+    return node.getViewIdResourceName();
+  }
+
+  @Override
+  public CharSequence getText(AccessibilityNodeInfo node) {
+    return node.getText();
+  }
+
+  @Override
+  public boolean isCheckable(AccessibilityNodeInfo node) {
+    return node.isCheckable();
+  }
+
+  @Override
+  public boolean isChecked(AccessibilityNodeInfo node) {
+    return node.isChecked();
+  }
+
+  @Override
+  public boolean isClickable(AccessibilityNodeInfo node) {
+    return node.isClickable();
+  }
+
+  @Override
+  public boolean isEnabled(AccessibilityNodeInfo node) {
+    return node.isEnabled();
+  }
+
+  @Override
+  public boolean isFocusable(AccessibilityNodeInfo node) {
+    return node.isFocusable();
+  }
+
+  @Override
+  public boolean isFocused(AccessibilityNodeInfo node) {
+    return node.isFocused();
+  }
+
+  @Override
+  public boolean isLongClickable(AccessibilityNodeInfo node) {
+    return node.isLongClickable();
+  }
+
+  @Override
+  public boolean isScrollable(AccessibilityNodeInfo node) {
+    return node.isScrollable();
+  }
+
+  @Override
+  public boolean isSelected(AccessibilityNodeInfo node) {
+    return node.isSelected();
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Result that is sent as a regular message carrying the header, immediately
+ * followed by a raw length-prefixed frame with the payload. The header's
+ * "binary" field holds the payload size.
+ */
+class BinaryResult {
+  final JSONObject header;
+  final ByteArrayOutputStream data;
+
+  BinaryResult(JSONObject header, ByteArrayOutputStream data) {
+    this.header = header;
+    this.data = data;
+  }
+}
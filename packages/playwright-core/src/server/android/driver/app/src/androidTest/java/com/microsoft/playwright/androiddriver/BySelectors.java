@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.BySelector;
+
+import java.util.regex.Pattern;
+
+/**
+ * Builds UiAutomator selectors from the selector JSON.
+ */
+class BySelectors extends Selectors<BySelector> {
+  static final BySelectors INSTANCE = new BySelectors();
+
+  private BySelectors() {
+  }
+
+  @Override
+  protected BySelector checkable(BySelector selector, boolean value) {
+    return selector != null ? selector.checkable(value) : By.checkable(value);
+  }
+
+  @Override
+  protected BySelector checked(BySelector selector, boolean value) {
+    return selector != null ? selector.checked(value) : By.checked(value);
+  }
+
+  @Override
+  protected BySelector clazz(BySelector selector, Pattern value) {
+    return selector != null ? selector.clazz(value) : By.clazz(value);
+  }
+
+  @Override
+  protected BySelector pkg(BySelector selector, Pattern value) {
+    return selector != null ? selector.pkg(value) : By.pkg(value);
+  }
+
+  @Override
+  protected BySelector desc(BySelector selector, Pattern value) {
+    return selector != null ? selector.desc(value) : By.desc(value);
+  }
+
+  @Override
+  protected BySelector text(BySelector selector, Pattern value) {
+    return selector != null ? selector.text(value) : By.text(value);
+  }
+
+  @Override
+  protected BySelector clickable(BySelector selector, boolean value) {
+    return selector != null ? selector.clickable(value) : By.clickable(value);
+  }
+
+  @Override
+  protected BySelector depth(BySelector selector, int value) {
+    return selector != null ? selector.depth(value) : By.depth(value);
+  }
+
+  @Override
+  protected BySelector enabled(BySelector selector, boolean value) {
+    return selector != null ? selector.enabled(value) : By.enabled(value);
+  }
+
+  @Override
+  protected BySelector focusable(BySelector selector, boolean value) {
+    return selector != null ? selector.focusable(value) : By.focusable(value);
+  }
+
+  @Override
+  protected BySelector focused(BySelector selector, boolean value) {
+    return selector != null ? selector.focused(value) : By.focused(value);
+  }
+
+  @Override
+  protected BySelector hasChild(BySelector selector, BySelector value) {
+    return selector != null ? selector.hasChild(value) : By.hasChild(value);
+  }
+
+  @Override
+  protected BySelector hasDescendant(BySelector selector, BySelector value, int maxDepth) {
+    return selector != null ? selector.hasDescendant(value, maxDepth) : By.hasDescendant(value, maxDepth);
+  }
+
+  @Override
+  protected BySelector longClickable(BySelector selector, boolean value) {
+    return selector != null ? selector.longClickable(value) : By.longClickable(value);
+  }
+
+  @Override
+  protected BySelector res(BySelector selector, Pattern value) {
+    return selector != null ? selector.res(value) : By.res(value);
+  }
+
+  @Override
+  protected BySelector scrollable(BySelector selector, boolean value) {
+    return selector != null ? selector.scrollable(value) : By.scrollable(value);
+  }
+
+  @Override
+  protected BySelector selected(BySelector selector, boolean value) {
+    return selector != null ? selector.selected(value) : By.selected(value);
+  }
+}
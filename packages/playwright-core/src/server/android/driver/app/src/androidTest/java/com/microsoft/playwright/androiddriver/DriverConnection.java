@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import android.net.LocalSocket;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Length-prefixed message framing over a driver socket connection.
+ *
+ * Messages are UTF-8 JSON unless the host switches the connection to
+ * MessagePack with the "negotiate" method. Negotiation has to be the first
+ * message on the connection: its response is still sent as JSON, and every
+ * frame after it in both directions uses the negotiated encoding.
+ *
+ * Negotiation can also turn on deflate compression for the frames sent by
+ * the driver, and a chunk size past which a streamed result such as the
+ * accessibility tree is sent in several frames while it is produced, rather
+ * than being buffered whole. See {@link FrameCodec}.
+ *
+ * Binary payloads such as screenshots are not embedded in the message: the
+ * message carries a "binary" field with the payload size and the payload
+ * follows it as the next frame, raw and in no particular encoding.
+ *
+ * Incoming frames larger than the configured maximum are rejected and close
+ * the connection, so that a corrupt length prefix can't trigger a huge
+ * allocation. Smaller frames are read into a buffer reused across messages,
+ * which is dropped again after a frame that grew it past the size the frame
+ * buffers keep.
+ */
+class DriverConnection {
+  static final String ENCODING_JSON = "json";
+  static final String ENCODING_MSGPACK = "msgpack";
+
+  static final String COMPRESSION_NONE = "none";
+  static final String COMPRESSION_DEFLATE = "deflate";
+  static final int DEFAULT_COMPRESSION_THRESHOLD = 8 * 1024;
+  private static final int SOCKET_BUFFER_SIZE = 16 * 1024;
+
+  private final DataInputStream dis;
+  private final LocalSocket socket;
+  private final DataOutputStream dos;
+  private final FrameCodec codec = new FrameCodec();
+  // Commands complete out of order, keeps the frames of each message contiguous on the wire.
+  // A lock rather than a monitor, since a chunked message holds it across calls.
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final int maxFrameSize;
+  private byte[] readBuffer = new byte[SOCKET_BUFFER_SIZE];
+  private int messageCount;
+  // Each client gets its own delta baseline.
+  final TreeSnapshots<AccessibilityNodeInfo> treeSnapshots = new TreeSnapshots<>(AccessibilityNodes.INSTANCE);
+  final Map<Integer, PendingCommand> pending = new ConcurrentHashMap<>();
+
+  DriverConnection(LocalSocket socket, int maxFrameSize) throws IOException {
+    this.socket = socket;
+    this.maxFrameSize = maxFrameSize;
+    // Every frame is flushed as a whole, so the length prefix doesn't go out in a write of its own.
+    dis = new DataInputStream(new BufferedInputStream(socket.getInputStream(), SOCKET_BUFFER_SIZE));
+    dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), SOCKET_BUFFER_SIZE));
+  }
+
+  /**
+   * Blocks until the next message arrives, returns null if it can't be decoded.
+   * The sample receives the frame size and the decode time.
+   */
+  JSONObject readMessage(DriverStats.Sample sample) throws IOException {
+    int size = dis.readInt();
+    // Also catches the compressed flag, compression only applies to outgoing frames.
+    if (size < 0 || size > maxFrameSize)
+      throw new IOException("Frame size " + (size & 0xffffffffL) + " exceeds the limit of " + maxFrameSize + " bytes");
+    if (size > readBuffer.length)
+      readBuffer = new byte[Math.min(maxFrameSize, Math.max(size, readBuffer.length * 2))];
+    dis.readFully(readBuffer, 0, size);
+    ++messageCount;
+    sample.bytesIn = size + 4;
+    sample.restart();
+    try {
+      return codec.decode(readBuffer, size);
+    } catch (JSONException e) {
+      return null;
+    } finally {
+      // Decoded messages don't reference the buffer, a rare large command shouldn't pin its size.
+      if (readBuffer.length > FrameCodec.MAX_RETAINED_BUFFER_SIZE)
+        readBuffer = new byte[SOCKET_BUFFER_SIZE];
+      sample.end(DriverStats.DECODE);
+    }
+  }
+
+  /**
+   * Handles the "negotiate" method on the reader thread, so that the
+   * encoding switch is ordered with respect to the incoming frames.
+   */
+  void negotiate(int id, JSONObject params) throws IOException, JSONException {
+    JSONObject response = new JSONObject();
+    response.put("id", id);
+    String encoding = params.optString("encoding", ENCODING_JSON);
+    String compression = params.optString("compression", COMPRESSION_NONE);
+    int threshold = params.optInt("compressionThreshold", DEFAULT_COMPRESSION_THRESHOLD);
+    int chunkSize = params.optInt("chunkSize", 0);
+    if (messageCount != 1) {
+      response.put("error", "negotiate must be the first message on the connection");
+    } else if (!encoding.equals(ENCODING_JSON) && !encoding.equals(ENCODING_MSGPACK)) {
+      response.put("error", "Unsupported encoding: " + encoding);
+    } else if (!compression.equals(COMPRESSION_NONE) && !compression.equals(COMPRESSION_DEFLATE)) {
+      response.put("error", "Unsupported compression: " + compression);
+    } else if (threshold < 1) {
+      response.put("error", "compressionThreshold must be positive");
+    } else if (chunkSize < 0) {
+      response.put("error", "chunkSize must not be negative");
+    } else {
+      JSONObject result = new JSONObject();
+      result.put("encoding", encoding);
+      result.put("compression", compression);
+      if (compression.equals(COMPRESSION_DEFLATE))
+        result.put("compressionThreshold", threshold);
+      if (chunkSize > 0)
+        result.put("chunkSize", chunkSize);
+      response.put("result", result);
+    }
+    writeMessage(response);
+    if (!response.has("error")) {
+      codec.setMsgpack(encoding.equals(ENCODING_MSGPACK));
+      codec.setCompressionThreshold(compression.equals(COMPRESSION_DEFLATE) ? threshold : 0);
+      codec.setChunkSize(chunkSize);
+    }
+  }
+
+  /**
+   * Handles the "cancel" method on the reader thread, so that it doesn't
+   * queue up behind the commands it is meant to abort.
+   */
+  void cancel(int id, JSONObject params) throws IOException, JSONException {
+    PendingCommand command = pending.get(params.optInt("id", -1));
+    boolean cancelled = command != null && command.cancel();
+    if (cancelled && !command.hasStarted()) {
+      // It may sit behind other clients' input for a while, answer it now
+      // rather than when it reaches the head of the queue. It won't run.
+      pending.remove(command.id);
+      JSONObject error = new JSONObject();
+      error.put("id", command.id);
+      error.put("error", "Command was cancelled");
+      error.put("cancelled", true);
+      writeMessage(error);
+    }
+    JSONObject result = new JSONObject();
+    result.put("cancelled", cancelled);
+    JSONObject response = new JSONObject();
+    response.put("id", id);
+    response.put("result", result);
+    writeMessage(response);
+  }
+
+  void close() {
+    // Nobody is left to receive the results.
+    for (PendingCommand command : pending.values())
+      command.cancel();
+    try {
+      socket.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Pushes an unsolicited notification, it carries a method name instead of an id.
+   */
+  void writeEvent(String method, JSONObject params) throws IOException, JSONException {
+    JSONObject event = new JSONObject();
+    event.put("method", method);
+    event.put("params", params);
+    writeMessage(event);
+  }
+
+  void writeEvent(String method, BinaryResult params) throws IOException, JSONException {
+    JSONObject event = new JSONObject();
+    event.put("method", method);
+    event.put("params", params.header);
+    writeBinary(event, params.data, null);
+  }
+
+  void writeMessage(JSONObject message) throws IOException, JSONException {
+    writeMessage(message, null);
+  }
+
+  /**
+   * Encodes and sends the message, the optional sample receives the encode
+   * and write times and the frame size.
+   */
+  void writeMessage(JSONObject response, DriverStats.Sample sample) throws IOException, JSONException {
+    if (sample != null)
+      sample.restart();
+    Object result = response.opt("result");
+    if (result instanceof BinaryResult) {
+      response.put("result", ((BinaryResult) result).header);
+      writeBinary(response, ((BinaryResult) result).data, sample);
+      return;
+    }
+
+    Chunks chunks = result instanceof StreamingResult ? new Chunks() : null;
+    try {
+      FrameCodec.FrameBuffer frame;
+      try {
+        frame = codec.encode(response, chunks);
+      } catch (IOException | RuntimeException e) {
+        if (chunks != null && chunks.started) {
+          // Part of the message is on the wire, the host can't tell where the next one starts.
+          close();
+          throw new IOException("Streamed result failed after " + chunks.written + " bytes were sent", e);
+        }
+        if (e instanceof IOException || response.has("error"))
+          throw e;
+        response.remove("result");
+        response.put("error", e.toString());
+        writeMessage(response, sample);
+        return;
+      }
+      // A streamed result is produced while it is encoded, that time belongs to
+      // the command, and so does writing the chunks sent meanwhile.
+      if (sample != null && chunks != null)
+        sample.end(DriverStats.EXECUTE);
+      FrameCodec.FrameBuffer compressed = codec.deflate(frame);
+      if (sample != null)
+        sample.end(DriverStats.ENCODE);
+      int written;
+      writeLock.lock();
+      try {
+        written = FrameCodec.writeFrame(dos, frame, compressed);
+        dos.flush();
+      } finally {
+        writeLock.unlock();
+      }
+      recordWrite(sample, written + (chunks != null ? chunks.written : 0));
+    } finally {
+      if (chunks != null && chunks.started)
+        writeLock.unlock();
+    }
+  }
+
+  /**
+   * Sends the leading chunks of a streamed result as soon as they are encoded.
+   * The write lock is taken with the first chunk and held until the final
+   * frame is out, so that peak memory is bounded by the chunk size and not by
+   * the size of the result.
+   */
+  private class Chunks implements FrameCodec.ChunkWriter {
+    boolean started;
+    int written;
+
+    @Override
+    public void write(FrameCodec.FrameBuffer chunk) throws IOException {
+      if (!started) {
+        writeLock.lock();
+        started = true;
+      }
+      written += FrameCodec.writeFrame(dos, chunk, codec.deflate(chunk), true);
+      dos.flush();
+    }
+  }
+
+  /**
+   * Sends the message followed by the raw payload frame, the two are never
+   * interleaved with other frames.
+   */
+  private void writeBinary(JSONObject message, ByteArrayOutputStream data, DriverStats.Sample sample) throws IOException {
+    FrameCodec.FrameBuffer frame = codec.encode(message);
+    FrameCodec.FrameBuffer compressed = codec.deflate(frame);
+    if (sample != null)
+      sample.end(DriverStats.ENCODE);
+    int written;
+    writeLock.lock();
+    try {
+      written = FrameCodec.writeFrame(dos, frame, compressed);
+      // Images are compressed already, the payload is always sent as is.
+      dos.writeInt(data.size());
+      data.writeTo(dos);
+      dos.flush();
+    } finally {
+      writeLock.unlock();
+    }
+    recordWrite(sample, written + 4 + data.size());
+  }
+
+  private static void recordWrite(DriverStats.Sample sample, int size) {
+    if (sample == null)
+      return;
+    sample.end(DriverStats.WRITE);
+    sample.bytesOut = size;
+  }
+}
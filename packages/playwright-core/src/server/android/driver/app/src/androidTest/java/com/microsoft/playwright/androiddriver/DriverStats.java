@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-method request counters and latency histograms.
+ *
+ * Every request is split into the phases it goes through in the driver:
+ * decode on the reader thread, queue while waiting for an executor, execute,
+ * encode the response and write it to the socket. Recording a request costs a
+ * few clock reads and one short lock, so stats are always on.
+ *
+ * Streamed results such as the full tree are produced by the encoder: the
+ * hierarchy is walked while the frame is written. That serialization is
+ * recorded as execute, only compressing the frame counts as encode for them.
+ */
+class DriverStats {
+  static final int DECODE = 0;
+  static final int QUEUE = 1;
+  static final int EXECUTE = 2;
+  static final int ENCODE = 3;
+  static final int WRITE = 4;
+  private static final String[] PHASES = { "decode", "queue", "execute", "encode", "write" };
+
+  /**
+   * Timings of a single request, handed over from the reader thread to the worker.
+   */
+  static class Sample {
+    String method;
+    long bytesIn;
+    long bytesOut;
+    private final long[] nanos = new long[PHASES.length];
+    private long mark = System.nanoTime();
+
+    /**
+     * Ends the given phase, the next one starts right away.
+     */
+    void end(int phase) {
+      long now = System.nanoTime();
+      nanos[phase] += now - mark;
+      mark = now;
+    }
+
+    void restart() {
+      mark = System.nanoTime();
+    }
+  }
+
+  /**
+   * Power of two buckets in microseconds: bucket i counts latencies in [2^(i-1), 2^i).
+   */
+  private static class Histogram {
+    private static final int BUCKETS = 32;
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long totalMicros;
+    private long maxMicros;
+
+    void record(long nanos) {
+      long micros = nanos / 1000;
+      int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+      ++buckets[bucket];
+      ++count;
+      totalMicros += micros;
+      maxMicros = Math.max(maxMicros, micros);
+    }
+
+    long quantile(double q) {
+      long rank = (long) Math.ceil(count * q);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; ++i) {
+        seen += buckets[i];
+        if (seen >= rank && seen > 0)
+          return Math.min(1L << i, maxMicros);
+      }
+      return 0;
+    }
+
+    JSONObject toJSON() throws JSONException {
+      JSONObject result = new JSONObject();
+      result.put("totalUs", totalMicros);
+      result.put("maxUs", maxMicros);
+      result.put("p50Us", quantile(0.5));
+      result.put("p90Us", quantile(0.9));
+      result.put("p99Us", quantile(0.99));
+      JSONArray histogram = new JSONArray();
+      int last = BUCKETS - 1;
+      while (last > 0 && buckets[last] == 0)
+        --last;
+      for (int i = 0; i <= last; ++i)
+        histogram.put(buckets[i]);
+      result.put("histogram", histogram);
+      return result;
+    }
+  }
+
+  private static class MethodStats {
+    long count;
+    long errors;
+    long bytesIn;
+    long bytesOut;
+    final Histogram total = new Histogram();
+    final Histogram[] phases = new Histogram[PHASES.length];
+
+    MethodStats() {
+      for (int i = 0; i < phases.length; ++i)
+        phases[i] = new Histogram();
+    }
+  }
+
+  private final Map<String, MethodStats> methods = new TreeMap<>();
+  private long since = SystemClock.elapsedRealtime();
+
+  synchronized void record(Sample sample, boolean error) {
+    MethodStats stats = methods.get(sample.method);
+    if (stats == null) {
+      stats = new MethodStats();
+      methods.put(sample.method, stats);
+    }
+    ++stats.count;
+    if (error)
+      ++stats.errors;
+    stats.bytesIn += sample.bytesIn;
+    stats.bytesOut += sample.bytesOut;
+    long total = 0;
+    for (int i = 0; i < PHASES.length; ++i) {
+      stats.phases[i].record(sample.nanos[i]);
+      total += sample.nanos[i];
+    }
+    stats.total.record(total);
+  }
+
+  synchronized JSONObject toJSON(boolean reset) throws JSONException {
+    JSONObject result = new JSONObject();
+    result.put("durationMs", SystemClock.elapsedRealtime() - since);
+    result.put("histogramBuckets", "bucket i counts latencies in [2^(i-1), 2^i) us");
+    JSONObject methodsObject = new JSONObject();
+    for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+      MethodStats stats = entry.getValue();
+      JSONObject methodObject = new JSONObject();
+      methodObject.put("count", stats.count);
+      methodObject.put("errors", stats.errors);
+      methodObject.put("bytesIn", stats.bytesIn);
+      methodObject.put("bytesOut", stats.bytesOut);
+      methodObject.put("total", stats.total.toJSON());
+      JSONObject phasesObject = new JSONObject();
+      for (int i = 0; i < PHASES.length; ++i)
+        phasesObject.put(PHASES[i], stats.phases[i].toJSON());
+      methodObject.put("phases", phasesObject);
+      methodsObject.put(entry.getKey(), methodObject);
+    }
+    result.put("methods", methodsObject);
+    if (reset) {
+      methods.clear();
+      since = SystemClock.elapsedRealtime();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs tasks one at a time on a single thread, taking turns between owners.
+ *
+ * Each owner's tasks run in submission order, and owners with pending tasks
+ * are served round-robin, so a client that floods the queue can't starve the
+ * others.
+ */
+class FairSerialExecutor {
+  private final Map<Object, ArrayDeque<Runnable>> queues = new HashMap<>();
+  private final ArrayDeque<Object> turns = new ArrayDeque<>();
+  private final Thread thread;
+  private boolean shutdown;
+
+  FairSerialExecutor(String name) {
+    thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  synchronized void execute(Object owner, Runnable task) {
+    if (shutdown)
+      throw new IllegalStateException("Executor has been shut down");
+    ArrayDeque<Runnable> queue = queues.get(owner);
+    if (queue == null) {
+      queue = new ArrayDeque<>();
+      queues.put(owner, queue);
+      turns.add(owner);
+      notifyAll();
+    }
+    queue.add(task);
+  }
+
+  /**
+   * Drops the tasks that the owner still has queued.
+   */
+  synchronized void remove(Object owner) {
+    if (queues.remove(owner) != null)
+      turns.remove(owner);
+  }
+
+  synchronized void shutdownNow() {
+    shutdown = true;
+    queues.clear();
+    turns.clear();
+    thread.interrupt();
+  }
+
+  private synchronized Runnable next() throws InterruptedException {
+    while (!shutdown && turns.isEmpty())
+      wait();
+    if (shutdown)
+      return null;
+    Object owner = turns.poll();
+    ArrayDeque<Runnable> queue = queues.get(owner);
+    Runnable task = queue.poll();
+    if (queue.isEmpty())
+      queues.remove(owner);
+    else
+      turns.add(owner);
+    return task;
+  }
+
+  private void run() {
+    try {
+      Runnable task;
+      while ((task = next()) != null) {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          e.printStackTrace();
+        }
+        // An interrupt aimed at the finished task must not leak into the next one.
+        Thread.interrupted();
+      }
+    } catch (InterruptedException ignored) {
+    }
+  }
+}
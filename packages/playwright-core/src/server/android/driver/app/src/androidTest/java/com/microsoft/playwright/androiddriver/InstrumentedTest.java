@@ -16,20 +16,20 @@
 
 package com.microsoft.playwright.androiddriver;
 
+import android.app.UiAutomation;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.net.LocalServerSocket;
 import android.net.LocalSocket;
+import android.util.LruCache;
 import android.view.accessibility.AccessibilityNodeInfo;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
-import androidx.test.uiautomator.By;
 import androidx.test.uiautomator.BySelector;
 import androidx.test.uiautomator.Direction;
 import androidx.test.uiautomator.UiDevice;
 import androidx.test.uiautomator.UiObject2;
-import androidx.test.uiautomator.Until;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -37,14 +37,15 @@ import org.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.nio.charset.StandardCharsets;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Instrumented test, which will execute on an Android device.
@@ -54,89 +55,80 @@ import java.util.regex.Pattern;
 @RunWith(AndroidJUnit4.class)
 public class InstrumentedTest {
 
-  @SuppressWarnings("ConstantConditions")
-  private static BySelector parseSelector(JSONObject param) throws JSONException{
-    JSONObject selector = param.getJSONObject("selector");
-    BySelector result = null;
-    if (selector.has("checkable")) {
-      boolean value = selector.getBoolean("checkable");
-      result = result != null ? result.checked(value) : By.checkable(value);
-    }
-    if (selector.has("checked")) {
-      boolean value = selector.getBoolean("checked");
-      result = result != null ? result.checked(value) : By.checked(value);
-    }
-    if (selector.has("clazz")) {
-      Pattern value = Pattern.compile(selector.getString("clazz"));
-      result = result != null ? result.clazz(value) : By.clazz(value);
-    }
-    if (selector.has("pkg")) {
-      Pattern value = Pattern.compile(selector.getString("pkg"));
-      result = result != null ? result.pkg(value) : By.pkg(value);
-    }
-    if (selector.has("desc")) {
-      Pattern value = Pattern.compile(selector.getString("desc"));
-      result = result != null ? result.desc(value) : By.desc(value);
-    }
-    if (selector.has("text")) {
-      Pattern value = Pattern.compile(selector.getString("text"));
-      result = result != null ? result.text(value) : By.text(value);
-    }
-    if (selector.has("clickable")) {
-      boolean value = selector.getBoolean("clickable");
-      result = result != null ? result.clickable(value) : By.clickable(value);
-    }
-    if (selector.has("depth")) {
-      int value = selector.getInt("depth");
-      result = result != null ? result.depth(value) : By.depth(value);
-    }
-    if (selector.has("enabled")) {
-      boolean value = selector.getBoolean("enabled");
-      result = result != null ? result.enabled(value) : By.enabled(value);
-    }
-    if (selector.has("focusable")) {
-      boolean value = selector.getBoolean("focusable");
-      result = result != null ? result.focusable(value) : By.focusable(value);
-    }
-    if (selector.has("focused")) {
-      boolean value = selector.getBoolean("focused");
-      result = result != null ? result.focused(value) : By.focused(value);
-    }
-    if (selector.has("hasChild")) {
-      BySelector value = parseSelector(selector.getJSONObject("hasChild"));
-      result = result != null ? result.hasChild(value) : By.hasChild(value);
-    }
-    if (selector.has("hasDescendant")) {
-      JSONObject object = selector.getJSONObject("hasDescendant");
-      BySelector value = parseSelector(object);
-      int maxDepth = 10000;
-      if (selector.has("maxDepth"))
-        maxDepth = selector.getInt("maxDepth");
-      result = result != null ? result.hasDescendant(value, maxDepth) : By.hasDescendant(value, maxDepth);
-    }
-    if (selector.has("longClickable")) {
-      boolean value = selector.getBoolean("longClickable");
-      result = result != null ? result.longClickable(value) : By.longClickable(value);
-    }
-    if (selector.has("res")) {
-      Pattern value = Pattern.compile(selector.getString("res"));
-      result = result != null ? result.res(value) : By.res(value);
-    }
-    if (selector.has("scrollable")) {
-      boolean value = selector.getBoolean("scrollable");
-      result = result != null ? result.scrollable(value) : By.scrollable(value);
-    }
-    if (selector.has("selected")) {
-      boolean value = selector.getBoolean("selected");
-      result = result != null ? result.selected(value) : By.selected(value);
+  private static final int DEFAULT_MAX_CONCURRENCY = 4;
+  private static final int DEFAULT_SELECTOR_CACHE_SIZE = 512;
+  private static final int DEFAULT_INFO_CACHE_SIZE = 64;
+  private static final int DEFAULT_FIND_ALL_LIMIT = 100;
+  private static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+  private static final String[] OBJECT_FIELDS = {
+      "clazz",
+      "pkg",
+      "desc",
+      "res",
+      "text",
+      "bounds",
+      "checkable",
+      "checked",
+      "clickable",
+      "enabled",
+      "focusable",
+      "focused",
+      "longClickable",
+      "scrollable",
+      "selected" };
+
+  private static final Set<String> INPUT_METHODS = new HashSet<>(Arrays.asList(
+      "fill",
+      "click",
+      "drag",
+      "fling",
+      "longClick",
+      "pinchClose",
+      "pinchOpen",
+      "scroll",
+      "swipe",
+      "inputPress",
+      "inputClick",
+      "inputSwipe",
+      "inputDrag",
+      "batch"));
+
+  // Batch steps run in order on the input lane and are answered in one frame,
+  // so they can't nest, renegotiate or cancel on the connection, or stream a
+  // deferred or binary result.
+  private static final Set<String> NON_BATCHABLE_METHODS = new HashSet<>(Arrays.asList(
+      "batch",
+      "cancel",
+      "negotiate",
+      "screenshot",
+      "tree"));
+
+  private static LruCache<String, BySelector> selectorCache;
+  private static AccessibilityEvents events;
+  private static ScreenCache screenCache;
+  private static ScreenCapture screenCapture;
+  private static final A11yTreeSerializer<AccessibilityNodeInfo> treeSerializer = new A11yTreeSerializer<>(AccessibilityNodes.INSTANCE);
+  private static final DriverStats stats = new DriverStats();
+  private static ExecutorService commandExecutor;
+  private static FairSerialExecutor inputExecutor;
+
+  private static BySelector cachedSelector(JSONObject params) throws JSONException {
+    // Host always emits selector keys in the same order, so the JSON source is a stable key.
+    String key = params.getJSONObject("selector").toString();
+    BySelector result = selectorCache.get(key);
+    if (result == null) {
+      result = BySelectors.INSTANCE.parse(params);
+      if (result != null)
+        selectorCache.put(key, result);
     }
     return result;
   }
 
-  private static int parseTimeout(JSONObject params) throws JSONException {
-    if (params.has("timeout"))
-      return params.getInt("timeout");
-    return 30000;
+  private static long parseTimeout(JSONObject params) throws JSONException {
+    long timeout = params.has("timeout") ? params.getInt("timeout") : 30000;
+    // The host's deadline for the command caps its own timeout.
+    return Math.min(timeout, PendingCommand.currentRemaining());
   }
 
   private static Point parsePoint(JSONObject params, String propertyName) throws JSONException {
@@ -155,7 +147,7 @@ public class InstrumentedTest {
   }
 
   private static UiObject2 wait(UiDevice device, JSONObject params) throws JSONException {
-    UiObject2 result = device.wait(Until.findObject(parseSelector(params)), parseTimeout(params));
+    UiObject2 result = events.waitForObject(cachedSelector(params), parseTimeout(params));
     if (result == null)
       throw new RuntimeException("Timed out waiting for selector");
     return result;
@@ -232,47 +224,102 @@ public class InstrumentedTest {
   }
 
   private static JSONObject info(UiDevice device, JSONObject params) throws JSONException {
-    UiObject2 object = device.findObject(parseSelector(params));
+    String key = params.getJSONObject("selector").toString();
+    return screenCache.info(key, () -> uncachedInfo(device, params));
+  }
 
-    JSONObject info = new JSONObject();
-    info.put("clazz", object.getClassName());
-    info.put("pkg", object.getApplicationPackage());
-    info.put("desc", object.getContentDescription());
-    info.put("res",  object.getResourceName());
-    info.put("text", object.getText());
-    info.put("bounds", serializeRect(object.getVisibleBounds()));
-    info.put("checkable", object.isCheckable());
-    info.put("checked", object.isChecked());
-    info.put("clickable", object.isClickable());
-    info.put("enabled", object.isEnabled());
-    info.put("focusable", object.isFocusable());
-    info.put("focused", object.isFocused());
-    info.put("longClickable", object.isLongClickable());
-    info.put("scrollable", object.isScrollable());
-    info.put("selected", object.isSelected());
-    return info;
+  private static JSONObject uncachedInfo(UiDevice device, JSONObject params) throws JSONException {
+    UiObject2 object = device.findObject(cachedSelector(params));
+    try {
+      return serializeObject(object, OBJECT_FIELDS);
+    } finally {
+      if (object != null)
+        object.recycle();
+    }
   }
 
-  private static JSONObject info(AccessibilityNodeInfo node) throws JSONException {
+  private static void serializeField(JSONObject info, UiObject2 object, String field) throws JSONException {
+    switch (field) {
+      case "clazz": info.put("clazz", object.getClassName()); break;
+      case "pkg": info.put("pkg", object.getApplicationPackage()); break;
+      case "desc": info.put("desc", object.getContentDescription()); break;
+      case "res": info.put("res",  object.getResourceName()); break;
+      case "text": info.put("text", object.getText()); break;
+      case "bounds": info.put("bounds", serializeRect(object.getVisibleBounds())); break;
+      case "checkable": info.put("checkable", object.isCheckable()); break;
+      case "checked": info.put("checked", object.isChecked()); break;
+      case "clickable": info.put("clickable", object.isClickable()); break;
+      case "enabled": info.put("enabled", object.isEnabled()); break;
+      case "focusable": info.put("focusable", object.isFocusable()); break;
+      case "focused": info.put("focused", object.isFocused()); break;
+      case "longClickable": info.put("longClickable", object.isLongClickable()); break;
+      case "scrollable": info.put("scrollable", object.isScrollable()); break;
+      case "selected": info.put("selected", object.isSelected()); break;
+      default: throw new JSONException("Unsupported field: " + field);
+    }
+  }
+
+  private static JSONObject serializeObject(UiObject2 object, String[] fields) throws JSONException {
     JSONObject info = new JSONObject();
-    Rect bounds = new Rect();
-    node.getBoundsInScreen(bounds);
-    info.put("desc", node.getContentDescription());
-    info.put("res",  node.getViewIdResourceName());
-    info.put("text", node.getText());
-    info.put("bounds", serializeRect(bounds));
-    info.put("checkable", node.isCheckable());
-    info.put("checked", node.isChecked());
-    info.put("clickable", node.isClickable());
-    info.put("enabled", node.isEnabled());
-    info.put("focusable", node.isFocusable());
-    info.put("focused", node.isFocused());
-    info.put("longClickable", node.isLongClickable());
-    info.put("scrollable", node.isScrollable());
-    info.put("selected", node.isSelected());
+    for (String field : fields)
+      serializeField(info, object, field);
     return info;
   }
 
+  private static String[] parseFields(JSONObject params) throws JSONException {
+    JSONArray items = params.optJSONArray("fields");
+    if (items == null)
+      return OBJECT_FIELDS;
+    String[] fields = new String[items.length()];
+    for (int i = 0; i < fields.length; ++i)
+      fields[i] = items.getString(i);
+    return fields;
+  }
+
+  /**
+   * Evaluates the selector on the device and returns a page of the matches,
+   * with only the requested fields. The cursor carries the event generation it
+   * was issued in, pages fetched after the screen changed are marked stale.
+   */
+  private static JSONObject findAll(UiDevice device, JSONObject params) throws JSONException {
+    String[] fields = parseFields(params);
+    int limit = params.optInt("limit", DEFAULT_FIND_ALL_LIMIT);
+    // An empty page would hand back the same cursor and the host would never get past it.
+    if (limit <= 0)
+      throw new JSONException("limit must be positive");
+    long generation = events.generation();
+    int offset = 0;
+    boolean stale = false;
+    if (params.has("cursor")) {
+      String[] cursor = params.getString("cursor").split(":");
+      if (cursor.length != 2)
+        throw new JSONException("Malformed cursor: " + params.getString("cursor"));
+      stale = Long.parseLong(cursor[0]) != generation;
+      offset = Integer.parseInt(cursor[1]);
+      if (offset < 0)
+        throw new JSONException("Malformed cursor: " + params.getString("cursor"));
+    }
+
+    List<UiObject2> objects = device.findObjects(cachedSelector(params));
+    JSONArray nodes = new JSONArray();
+    // Both are within int range, but their sum may not be.
+    int end = (int) Math.min(objects.size(), (long) offset + limit);
+    try {
+      for (int i = offset; i < end; ++i)
+        nodes.put(serializeObject(objects.get(i), fields));
+    } finally {
+      for (UiObject2 object : objects)
+        object.recycle();
+    }
+
+    JSONObject result = new JSONObject();
+    result.put("nodes", nodes);
+    result.put("total", objects.size());
+    result.put("cursor", end < objects.size() ? generation + ":" + end : JSONObject.NULL);
+    result.put("stale", stale);
+    return result;
+  }
+
   private static void inputPress(UiDevice device, JSONObject params) throws JSONException {
     device.pressKeyCode(params.getInt("keyCode"));
   }
@@ -298,133 +345,355 @@ public class InstrumentedTest {
     device.drag(from.x, from.y, to.x, to.y, params.getInt("steps"));
   }
 
-  private static JSONObject tree(UiDevice device) throws JSONException {
-    return serializeA11yNode(getRootA11yNode(device));
+  private static Object tree(DriverConnection connection, JSONObject params) throws JSONException {
+    if (params.optBoolean("snapshot")) {
+      long generation = events.generation();
+      return connection.treeSnapshots.snapshot(screenCache.root(), generation);
+    }
+    AccessibilityNodeInfo root = screenCache.root();
+    if (root == null)
+      throw new RuntimeException("Unable to get the accessibility root node");
+    return (StreamingResult) writer -> treeSerializer.write(writer, root);
   }
 
-  private static AccessibilityNodeInfo getRootA11yNode(UiDevice device) {
-    try {
-      Method getQueryController = UiDevice.class.getDeclaredMethod("getQueryController");
-      getQueryController.setAccessible(true);
-      Object queryController = getQueryController.invoke(device);
-
-      assert queryController != null;
-      Method getRootNode = queryController.getClass().getDeclaredMethod("getRootNode");
-      getRootNode.setAccessible(true);
-      return (AccessibilityNodeInfo) getRootNode.invoke(queryController);
-    } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-      return null;
+  private static JSONObject treeDelta(DriverConnection connection, JSONObject params) throws JSONException {
+    long generation = events.generation();
+    return connection.treeSnapshots.delta(screenCache.root(), generation, params.getInt("version"));
+  }
+
+  private static JSONObject subscribe(DriverConnection connection, JSONObject params) throws JSONException {
+    BySelector selector = params.has("selector") ? cachedSelector(params) : null;
+    JSONObject result = new JSONObject();
+    result.put("subscription", events.subscribe(connection, selector));
+    return result;
+  }
+
+  private static JSONObject unsubscribe(DriverConnection connection, JSONObject params) throws JSONException {
+    JSONObject result = new JSONObject();
+    result.put("unsubscribed", events.unsubscribe(connection, params.getInt("subscription")));
+    return result;
+  }
+
+  private static BinaryResult screenshot(JSONObject params) throws JSONException {
+    return screenCapture.screenshot(new ScreenCapture.Options(params));
+  }
+
+  private static JSONObject startScreencast(DriverConnection connection, JSONObject params) throws JSONException {
+    JSONObject result = new JSONObject();
+    result.put("screencast", screenCapture.start(connection, new ScreenCapture.Options(params), params.optInt("fps")));
+    return result;
+  }
+
+  private static JSONObject stopScreencast(DriverConnection connection, JSONObject params) throws JSONException {
+    JSONObject result = new JSONObject();
+    result.put("stopped", screenCapture.stop(connection, params.getInt("screencast")));
+    return result;
+  }
+
+  private static JSONObject batchStep(UiDevice device, DriverConnection connection, String method, JSONObject params, JSONObject batchParams) throws JSONException {
+    if (NON_BATCHABLE_METHODS.contains(method)) {
+      JSONObject step = new JSONObject();
+      step.put("error", "Method " + method + " is not supported in batch");
+      return step;
     }
+    if (!params.has("timeout") && batchParams.has("timeout"))
+      params.put("timeout", batchParams.getInt("timeout"));
+    JSONObject step = dispatch(device, connection, 0, method, params);
+    step.remove("id");
+    return step;
   }
 
-  private static JSONObject serializeA11yNode(AccessibilityNodeInfo node) throws JSONException {
-    JSONObject object = info(node);
-    if (node.getChildCount() == 0)
-      return  object;
-    JSONArray children = new JSONArray();
-    object.put("children", children);
-    for (int i = 0; i < node.getChildCount(); ++i)
-      children.put(serializeA11yNode(node.getChild(i)));
-    return object;
+  private static JSONObject batch(UiDevice device, DriverConnection connection, JSONObject params) throws JSONException {
+    JSONArray commands = params.getJSONArray("commands");
+    boolean continueOnError = params.optBoolean("continueOnError");
+    JSONArray steps = new JSONArray();
+    boolean failed = false;
+    for (int i = 0; i < commands.length(); ++i) {
+      JSONObject command = commands.getJSONObject(i);
+      JSONObject commandParams = command.optJSONObject("params");
+      JSONObject step = batchStep(device, connection, command.getString("method"), commandParams != null ? commandParams : new JSONObject(), params);
+      steps.put(step);
+      if (step.has("error")) {
+        failed = true;
+        if (!continueOnError)
+          break;
+      }
+    }
+
+    JSONObject result = new JSONObject();
+    result.put("steps", steps);
+    if (params.has("info") && (!failed || continueOnError))
+      result.put("info", batchStep(device, connection, "info", params.getJSONObject("info"), params));
+    return result;
   }
 
-  @Test
-  public void main() {
-    UiDevice device = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
+  private static JSONObject cacheStats(DriverConnection connection) throws JSONException {
+    JSONObject selectors = new JSONObject();
+    selectors.put("size", selectorCache.size());
+    selectors.put("maxSize", selectorCache.maxSize());
+    selectors.put("hits", selectorCache.hitCount());
+    selectors.put("misses", selectorCache.missCount());
+    selectors.put("evictions", selectorCache.evictionCount());
+    JSONObject result = screenCache.stats();
+    result.put("selectors", selectors);
+    result.put("snapshots", connection.treeSnapshots.stats());
+    return result;
+  }
 
+  private static int parseIntArgument(String name, int defaultValue) {
+    String value = InstrumentationRegistry.getArguments().getString(name);
+    if (value == null)
+      return defaultValue;
+    return Math.max(1, Integer.parseInt(value));
+  }
+
+  private static JSONObject dispatch(UiDevice device, DriverConnection connection, int id, String method, JSONObject params) throws JSONException {
+    JSONObject response = new JSONObject();
+    response.put("id", id);
+    response.put("result", params);
     try {
-      LocalServerSocket serverSocket = new LocalServerSocket("playwright_android_driver_socket");
-      LocalSocket socket = serverSocket.accept();
-      InputStream is = socket.getInputStream();
-      DataInputStream dis = new DataInputStream(is);
-      DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
-
-      //noinspection InfiniteLoopStatement
-      while (true) {
-        int id = 0;
-        String method = null;
-        JSONObject params = null;
-        try {
-          int size = dis.readInt();
-          byte[] buffer = new byte[size];
-          dis.readFully(buffer);
-          String s = new String(buffer, StandardCharsets.UTF_8);
-          JSONObject message = new JSONObject(s);
-          id = message.getInt("id");
-          method = message.getString("method");
-          params = message.getJSONObject("params");
-        } catch (JSONException ignored) {
-        }
-        if (method == null)
+      switch (method) {
+        case "wait":
+          wait(device, params);
+          break;
+        case "fill":
+          fill(device, params);
+          break;
+        case "click":
+          click(device, params);
+          break;
+        case "drag":
+          drag(device, params);
+          break;
+        case "fling":
+          fling(device, params);
+          break;
+        case "longClick":
+          longClick(device, params);
+          break;
+        case "pinchClose":
+          pinchClose(device, params);
+          break;
+        case "pinchOpen":
+          pinchOpen(device, params);
+          break;
+        case "scroll":
+          scroll(device, params);
+          break;
+        case "swipe":
+          swipe(device, params);
+          break;
+        case "info":
+          response.put("result", info(device, params));
+          break;
+        case "inputPress":
+          inputPress(device, params);
+          break;
+        case "inputClick":
+          inputClick(device, params);
+          break;
+        case "inputSwipe":
+          inputSwipe(device, params);
+          break;
+        case "inputDrag":
+          inputDrag(device, params);
+          break;
+        case "findAll":
+          response.put("result", findAll(device, params));
+          break;
+        case "tree":
+          response.put("result", tree(connection, params));
+          break;
+        case "treeDelta":
+          response.put("result", treeDelta(connection, params));
+          break;
+        case "batch":
+          response.put("result", batch(device, connection, params));
+          break;
+        case "subscribe":
+          response.put("result", subscribe(connection, params));
+          break;
+        case "unsubscribe":
+          response.put("result", unsubscribe(connection, params));
+          break;
+        case "screenshot":
+          response.put("result", screenshot(params));
+          break;
+        case "startScreencast":
+          response.put("result", startScreencast(connection, params));
+          break;
+        case "stopScreencast":
+          response.put("result", stopScreencast(connection, params));
+          break;
+        case "stats":
+          response.put("result", stats.toJSON(params.optBoolean("reset")));
+          break;
+        case "cacheStats":
+          response.put("result", cacheStats(connection));
+          break;
+        default:
+          throw new JSONException("Unknown method: " + method);
+      }
+    } catch (JSONException | RuntimeException e) {
+      response.put("error",  e.toString());
+    } finally {
+      // Input is about to change the screen, don't let cached reads outlive it.
+      if (INPUT_METHODS.contains(method))
+        events.invalidate();
+    }
+    return response;
+  }
+
+  private static JSONObject errorResponse(int id, String error, String kind) throws JSONException {
+    JSONObject response = new JSONObject();
+    response.put("id", id);
+    response.put("error", error);
+    response.put(kind, true);
+    return response;
+  }
+
+  /**
+   * Runs a command within its deadline and reports cancellation with a
+   * dedicated error. A command that completes despite a late cancel still
+   * reports its result. Returns null for a command cancelled while it was
+   * queued, cancel() has answered it already.
+   */
+  private static JSONObject execute(UiDevice device, DriverConnection connection, PendingCommand command, String method, JSONObject params) throws JSONException {
+    if (!command.start())
+      return null;
+    try {
+      if (command.remaining() <= 0)
+        return errorResponse(command.id, "Deadline exceeded before the command started", "deadlineExceeded");
+      JSONObject response = dispatch(device, connection, command.id, method, params);
+      if (response.has("error") && command.isCancelled())
+        return errorResponse(command.id, "Command was cancelled", "cancelled");
+      return response;
+    } finally {
+      command.finish();
+    }
+  }
+
+  private static void serve(UiDevice device, DriverConnection connection) throws IOException, JSONException {
+    //noinspection InfiniteLoopStatement
+    while (true) {
+      int id = 0;
+      String method = null;
+      JSONObject params = null;
+      long deadlineMs = -1;
+      DriverStats.Sample sample = new DriverStats.Sample();
+      try {
+        JSONObject message = connection.readMessage(sample);
+        if (message == null)
           continue;
+        id = message.getInt("id");
+        method = message.getString("method");
+        params = message.getJSONObject("params");
+        deadlineMs = message.optLong("deadlineMs", -1);
+      } catch (JSONException ignored) {
+      }
+      if (method == null)
+        continue;
+
+      if (method.equals("negotiate")) {
+        // A frame without params negotiates the defaults.
+        connection.negotiate(id, params != null ? params : new JSONObject());
+        continue;
+      }
+      if (method.equals("cancel")) {
+        // Without params there is nothing to cancel, it is answered with cancelled: false.
+        connection.cancel(id, params != null ? params : new JSONObject());
+        continue;
+      }
 
-        JSONObject response = new JSONObject();
-        response.put("id", id);
-        response.put("result", params);
+      PendingCommand command = new PendingCommand(id, deadlineMs);
+      String commandMethod = method;
+      JSONObject commandParams = params;
+      connection.pending.put(id, command);
+      sample.method = method;
+      sample.restart();
+      Runnable task = () -> {
         try {
-          assert params != null;
-          switch (method) {
-            case "wait":
-              wait(device, params);
-              break;
-            case "fill":
-              fill(device, params);
-              break;
-            case "click":
-              click(device, params);
-              break;
-            case "drag":
-              drag(device, params);
-              break;
-            case "fling":
-              fling(device, params);
-              break;
-            case "longClick":
-              longClick(device, params);
-              break;
-            case "pinchClose":
-              pinchClose(device, params);
-              break;
-            case "pinchOpen":
-              pinchOpen(device, params);
-              break;
-            case "scroll":
-              scroll(device, params);
-              break;
-            case "swipe":
-              swipe(device, params);
-              break;
-            case "info":
-              response.put("result", info(device, params));
-              break;
-            case "inputPress":
-              inputPress(device, params);
-              break;
-            case "inputClick":
-              inputClick(device, params);
-              break;
-            case "inputSwipe":
-              inputSwipe(device, params);
-              break;
-            case "inputDrag":
-              inputDrag(device, params);
-              break;
-            case "tree":
-              response.put("result", tree(device));
-              break;
-            default:
-
-          }
-        } catch (RuntimeException e) {
-          response.put("error",  e.toString());
+          sample.end(DriverStats.QUEUE);
+          JSONObject response = execute(device, connection, command, commandMethod, commandParams);
+          sample.end(DriverStats.EXECUTE);
+          connection.pending.remove(command.id);
+          if (response == null)
+            return;
+          connection.writeMessage(response, sample);
+          stats.record(sample, response.has("error"));
+        } catch (JSONException | IOException e) {
+          e.printStackTrace();
         }
-        byte[] responseBytes = response.toString().getBytes(StandardCharsets.UTF_8);
-        dos.writeInt(responseBytes.length);
-        dos.write(responseBytes);
-        dos.flush();
+      };
+      if (INPUT_METHODS.contains(method))
+        inputExecutor.execute(connection, task);
+      else
+        commandExecutor.execute(task);
+    }
+  }
+
+  @Test
+  public void main() {
+    UiDevice device = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
+    selectorCache = new LruCache<>(parseIntArgument("selectorCacheSize", DEFAULT_SELECTOR_CACHE_SIZE));
+    events = new AccessibilityEvents(device);
+    screenCache = new ScreenCache(device, events, parseIntArgument("infoCacheSize", DEFAULT_INFO_CACHE_SIZE));
+    UiAutomation automation = InstrumentationRegistry.getInstrumentation().getUiAutomation();
+    automation.setOnAccessibilityEventListener(events);
+    screenCapture = new ScreenCapture(automation);
+    // Read-only commands run concurrently, input-injecting ones are serialized
+    // and clients take turns on the input lane.
+    commandExecutor = Executors.newFixedThreadPool(parseIntArgument("maxConcurrency", DEFAULT_MAX_CONCURRENCY));
+    inputExecutor = new FairSerialExecutor("driver-input");
+
+    int maxFrameSize = parseIntArgument("maxFrameSize", DEFAULT_MAX_FRAME_SIZE);
+
+    // The driver runs until the last connected client goes away.
+    CountDownLatch finished = new CountDownLatch(1);
+    AtomicInteger clients = new AtomicInteger();
+    Thread acceptor = new Thread(() -> {
+      try {
+        LocalServerSocket serverSocket = new LocalServerSocket("playwright_android_driver_socket");
+        //noinspection InfiniteLoopStatement
+        while (true) {
+          LocalSocket socket = serverSocket.accept();
+          DriverConnection connection = new DriverConnection(socket, maxFrameSize);
+          clients.incrementAndGet();
+          Thread reader = new Thread(() -> {
+            try {
+              serve(device, connection);
+            } catch (JSONException | IOException e) {
+              e.printStackTrace();
+            } finally {
+              events.unsubscribeAll(connection);
+              screenCapture.stopAll(connection);
+              inputExecutor.remove(connection);
+              connection.close();
+              if (clients.decrementAndGet() == 0)
+                finished.countDown();
+            }
+          }, "driver-client");
+          reader.start();
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
+        finished.countDown();
       }
-    } catch (JSONException | IOException e) {
+    }, "driver-acceptor");
+    // A blocked accept() can't be interrupted, don't let it keep the process alive.
+    acceptor.setDaemon(true);
+    acceptor.start();
+
+    try {
+      finished.await();
+    } catch (InterruptedException e) {
       e.printStackTrace();
+    } finally {
+      automation.setOnAccessibilityEventListener(null);
+      events.shutdown();
+      commandExecutor.shutdownNow();
+      inputExecutor.shutdownNow();
+      screenCapture.shutdown();
     }
   }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Command that has been read from a connection and hasn't been answered yet.
+ *
+ * Cancelling interrupts the worker running the command. UiAutomator swallows
+ * interrupts in a few places, so long waits also poll {@link #checkCancelled()}.
+ */
+class PendingCommand {
+  private static final ThreadLocal<PendingCommand> current = new ThreadLocal<>();
+
+  final int id;
+  // Uptime millis, Long.MAX_VALUE when the host didn't set a deadline.
+  private final long deadline;
+  private Thread thread;
+  private boolean started;
+  private boolean cancelled;
+
+  /**
+   * @param deadlineMs time budget the host has left for this command, measured
+   *     from now so that the host and device clocks don't need to agree; negative
+   *     when there is no deadline.
+   */
+  PendingCommand(int id, long deadlineMs) {
+    this.id = id;
+    this.deadline = deadlineMs >= 0 ? SystemClock.uptimeMillis() + deadlineMs : Long.MAX_VALUE;
+  }
+
+  long remaining() {
+    if (deadline == Long.MAX_VALUE)
+      return Long.MAX_VALUE;
+    return deadline - SystemClock.uptimeMillis();
+  }
+
+  /**
+   * Binds the command to the calling worker, returns false if it was cancelled while queued.
+   */
+  synchronized boolean start() {
+    if (cancelled)
+      return false;
+    started = true;
+    thread = Thread.currentThread();
+    current.set(this);
+    return true;
+  }
+
+  synchronized void finish() {
+    thread = null;
+    current.remove();
+    // Don't leak a late cancellation into whatever the worker runs next.
+    Thread.interrupted();
+  }
+
+  synchronized boolean cancel() {
+    if (cancelled)
+      return false;
+    cancelled = true;
+    if (thread != null)
+      thread.interrupt();
+    return true;
+  }
+
+  synchronized boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Once the command is cancelled this no longer changes: a command that
+   * hasn't started by then never runs.
+   */
+  synchronized boolean hasStarted() {
+    return started;
+  }
+
+  /**
+   * Time left for the command running on the calling thread, Long.MAX_VALUE without a deadline.
+   */
+  static long currentRemaining() {
+    PendingCommand command = current.get();
+    return command != null ? command.remaining() : Long.MAX_VALUE;
+  }
+
+  static void checkCancelled() {
+    PendingCommand command = current.get();
+    if (command != null && command.isCancelled())
+      throw new CancellationException("Command was cancelled");
+  }
+}
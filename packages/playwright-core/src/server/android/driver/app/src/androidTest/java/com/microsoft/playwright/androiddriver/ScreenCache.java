@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import android.os.SystemClock;
+import android.util.LruCache;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import androidx.test.uiautomator.UiDevice;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Serves hierarchy reads from memory for as long as no accessibility event
+ * reported a change since they were made, and for at most a second: some
+ * changes don't produce events.
+ */
+class ScreenCache {
+  // Same bound as the waits' re-check interval in AccessibilityEvents.
+  private static final long MAX_AGE_MS = 1000;
+
+  interface InfoLoader {
+    JSONObject load() throws JSONException;
+  }
+
+  private static class CachedInfo {
+    final long generation;
+    final long time;
+    final JSONObject info;
+
+    CachedInfo(long generation, long time, JSONObject info) {
+      this.generation = generation;
+      this.time = time;
+      this.info = info;
+    }
+  }
+
+  private final AccessibilityEvents events;
+  private final Object queryController;
+  private final Method getRootNode;
+  private final LruCache<String, CachedInfo> infos;
+
+  private AccessibilityNodeInfo root;
+  private long rootGeneration;
+  private long rootTime;
+  private long rootReused;
+  private long rootRefreshed;
+  private long infoReused;
+  private long infoRefreshed;
+
+  ScreenCache(UiDevice device, AccessibilityEvents events, int maxInfos) {
+    this.events = events;
+    this.infos = new LruCache<>(maxInfos);
+    Object queryController = null;
+    Method getRootNode = null;
+    // Both are hidden UiAutomator APIs, resolve them once rather than on every tree request.
+    try {
+      Method getQueryController = UiDevice.class.getDeclaredMethod("getQueryController");
+      getQueryController.setAccessible(true);
+      queryController = getQueryController.invoke(device);
+      if (queryController != null) {
+        getRootNode = queryController.getClass().getDeclaredMethod("getRootNode");
+        getRootNode.setAccessible(true);
+      }
+    } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+      e.printStackTrace();
+    }
+    this.queryController = queryController;
+    this.getRootNode = getRootNode;
+  }
+
+  /**
+   * Returns the root of the active window. Cached roots are never recycled,
+   * other threads may still be walking them.
+   */
+  synchronized AccessibilityNodeInfo root() {
+    long generation = events.generation();
+    long now = SystemClock.uptimeMillis();
+    if (root != null && rootGeneration == generation && now - rootTime < MAX_AGE_MS) {
+      ++rootReused;
+      return root;
+    }
+    ++rootRefreshed;
+    root = fetchRoot();
+    rootGeneration = generation;
+    rootTime = now;
+    return root;
+  }
+
+  JSONObject info(String key, InfoLoader loader) throws JSONException {
+    // Read the generation first, so that a change during the load drops the entry.
+    long generation = events.generation();
+    long now = SystemClock.uptimeMillis();
+    CachedInfo cached = infos.get(key);
+    if (cached != null && cached.generation == generation && now - cached.time < MAX_AGE_MS) {
+      synchronized (this) {
+        ++infoReused;
+      }
+      return cached.info;
+    }
+    JSONObject info = loader.load();
+    infos.put(key, new CachedInfo(generation, now, info));
+    synchronized (this) {
+      ++infoRefreshed;
+    }
+    return info;
+  }
+
+  synchronized JSONObject stats() throws JSONException {
+    JSONObject result = new JSONObject();
+    JSONObject rootStats = new JSONObject();
+    rootStats.put("reused", rootReused);
+    rootStats.put("refreshed", rootRefreshed);
+    result.put("root", rootStats);
+    JSONObject infoStats = new JSONObject();
+    infoStats.put("size", infos.size());
+    infoStats.put("maxSize", infos.maxSize());
+    infoStats.put("reused", infoReused);
+    infoStats.put("refreshed", infoRefreshed);
+    result.put("info", infoStats);
+    return result;
+  }
+
+  private AccessibilityNodeInfo fetchRoot() {
+    if (getRootNode == null)
+      return null;
+    try {
+      return (AccessibilityNodeInfo) getRootNode.invoke(queryController);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      return null;
+    }
+  }
+}
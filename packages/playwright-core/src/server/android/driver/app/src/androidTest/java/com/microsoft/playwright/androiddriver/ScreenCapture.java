@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import android.app.UiAutomation;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Captures the screen from inside the instrumentation, either one frame at a
+ * time or as a screencast pushed to the connection at a fixed rate.
+ */
+class ScreenCapture {
+  private static final int DEFAULT_QUALITY = 80;
+  private static final int DEFAULT_FPS = 5;
+  private static final int MAX_FPS = 30;
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  static class Options {
+    final String format;
+    final int quality;
+    final float scale;
+
+    Options(JSONObject params) throws JSONException {
+      format = params.optString("format", "png");
+      if (!format.equals("png") && !format.equals("jpeg"))
+        throw new JSONException("Unsupported screenshot format: " + format);
+      quality = params.optInt("quality", DEFAULT_QUALITY);
+      if (quality < 0 || quality > 100)
+        throw new JSONException("Screenshot quality must be between 0 and 100");
+      scale = (float) params.optDouble("scale", 1);
+      if (!(scale > 0 && scale <= 1))
+        throw new JSONException("Screenshot scale must be in (0, 1]");
+    }
+  }
+
+  private class Screencast implements Runnable {
+    final int id;
+    final DriverConnection connection;
+    final Options options;
+    // Frames are captured one at a time, so the buffer is reused across them.
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+    ScheduledFuture<?> future;
+    int frame;
+
+    Screencast(int id, DriverConnection connection, Options options) {
+      this.id = id;
+      this.connection = connection;
+      this.options = options;
+    }
+
+    @Override
+    public void run() {
+      try {
+        buffer.reset();
+        JSONObject params = capture(options, buffer);
+        params.put("screencast", id);
+        params.put("frame", ++frame);
+        params.put("timestamp", SystemClock.uptimeMillis());
+        connection.writeEvent("screencastFrame", new BinaryResult(params, buffer));
+      } catch (IOException e) {
+        // The client went away.
+        stop(connection, id);
+      } catch (JSONException | RuntimeException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  private final UiAutomation automation;
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final Map<Integer, Screencast> screencasts = new ConcurrentHashMap<>();
+  private final AtomicInteger lastScreencastId = new AtomicInteger();
+
+  ScreenCapture(UiAutomation automation) {
+    this.automation = automation;
+  }
+
+  BinaryResult screenshot(Options options) throws JSONException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+    return new BinaryResult(capture(options, buffer), buffer);
+  }
+
+  int start(DriverConnection connection, Options options, int fps) {
+    int id = lastScreencastId.incrementAndGet();
+    Screencast screencast = new Screencast(id, connection, options);
+    screencasts.put(id, screencast);
+    long interval = 1000 / Math.max(1, Math.min(fps > 0 ? fps : DEFAULT_FPS, MAX_FPS));
+    // Fixed delay rather than rate: a slow frame delays the next one instead of piling up.
+    screencast.future = scheduler.scheduleWithFixedDelay(screencast, 0, interval, TimeUnit.MILLISECONDS);
+    return id;
+  }
+
+  boolean stop(DriverConnection connection, int id) {
+    Screencast screencast = screencasts.get(id);
+    if (screencast == null || screencast.connection != connection)
+      return false;
+    screencasts.remove(id);
+    screencast.future.cancel(false);
+    return true;
+  }
+
+  void stopAll(DriverConnection connection) {
+    Iterator<Screencast> it = screencasts.values().iterator();
+    while (it.hasNext()) {
+      Screencast screencast = it.next();
+      if (screencast.connection != connection)
+        continue;
+      it.remove();
+      screencast.future.cancel(false);
+    }
+  }
+
+  void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  private JSONObject capture(Options options, ByteArrayOutputStream out) throws JSONException {
+    Bitmap bitmap = automation.takeScreenshot();
+    if (bitmap == null)
+      throw new RuntimeException("Unable to take screenshot");
+    if (options.scale < 1) {
+      int width = Math.max(1, Math.round(bitmap.getWidth() * options.scale));
+      int height = Math.max(1, Math.round(bitmap.getHeight() * options.scale));
+      Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+      if (scaled != bitmap)
+        bitmap.recycle();
+      bitmap = scaled;
+    }
+    try {
+      Bitmap.CompressFormat format = options.format.equals("jpeg") ? Bitmap.CompressFormat.JPEG : Bitmap.CompressFormat.PNG;
+      if (!bitmap.compress(format, options.quality, out))
+        throw new RuntimeException("Unable to encode screenshot");
+      JSONObject header = new JSONObject();
+      header.put("format", options.format);
+      header.put("width", bitmap.getWidth());
+      header.put("height", bitmap.getHeight());
+      header.put("binary", out.size());
+      return header;
+    } finally {
+      bitmap.recycle();
+    }
+  }
+}
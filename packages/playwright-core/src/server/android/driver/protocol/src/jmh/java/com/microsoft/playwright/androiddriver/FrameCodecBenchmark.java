@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes a single node "info" response and a full tree snapshot response.
+ */
+@State(Scope.Thread)
+public class FrameCodecBenchmark {
+  @Param({"info", "tree"})
+  public String message;
+
+  @Param({"json", "msgpack"})
+  public String encoding;
+
+  @Param({"false", "true"})
+  public boolean compression;
+
+  private final FrameCodec codec = new FrameCodec();
+  private JSONObject response;
+  private byte[] frame;
+
+  @Setup
+  public void setup() throws IOException, JSONException {
+    SyntheticNode root = SyntheticNode.tree(4, 5, 42);
+    response = new JSONObject();
+    response.put("id", 1);
+    if (message.equals("info"))
+      response.put("result", new A11yTreeSerializer<>(SyntheticNodes.INSTANCE).info(root));
+    else
+      response.put("result", new TreeSnapshots<>(SyntheticNodes.INSTANCE).snapshot(root, 0));
+    codec.setMsgpack(encoding.equals("msgpack"));
+    codec.setCompressionThreshold(compression ? 1024 : 0);
+    frame = codec.encode(response).toByteArray();
+  }
+
+  @Benchmark
+  public int encode() throws IOException {
+    FrameCodec.FrameBuffer frame = codec.encode(response);
+    FrameCodec.FrameBuffer compressed = codec.deflate(frame);
+    return compressed != null ? compressed.size() : frame.size();
+  }
+
+  @Benchmark
+  public JSONObject decode() throws JSONException {
+    return codec.decode(frame, frame.length);
+  }
+}
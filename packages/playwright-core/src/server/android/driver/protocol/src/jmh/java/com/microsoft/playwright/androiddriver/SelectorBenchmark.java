@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+@State(Scope.Thread)
+public class SelectorBenchmark {
+  private static final String[] SELECTORS = {
+      "{\"res\":\"com.example.app:id/item_12\"}",
+      "{\"clazz\":\"android.widget.LinearLayout\",\"text\":\"Item \\\\d+\",\"clickable\":true,"
+          + "\"hasDescendant\":{\"selector\":{\"res\":\"com.example.app:id/title\",\"enabled\":true}},\"maxDepth\":3}",
+  };
+
+  /**
+   * Collects the predicates the way BySelector does, one object per call.
+   */
+  private static class ListSelectors extends Selectors<List<Object>> {
+    private static List<Object> add(List<Object> selector, Object value) {
+      List<Object> result = selector != null ? selector : new ArrayList<>();
+      result.add(value);
+      return result;
+    }
+
+    @Override protected List<Object> checkable(List<Object> selector, boolean value) { return add(selector, value); }
+    @Override protected List<Object> checked(List<Object> selector, boolean value) { return add(selector, value); }
+    @Override protected List<Object> clazz(List<Object> selector, Pattern value) { return add(selector, value); }
+    @Override protected List<Object> pkg(List<Object> selector, Pattern value) { return add(selector, value); }
+    @Override protected List<Object> desc(List<Object> selector, Pattern value) { return add(selector, value); }
+    @Override protected List<Object> text(List<Object> selector, Pattern value) { return add(selector, value); }
+    @Override protected List<Object> clickable(List<Object> selector, boolean value) { return add(selector, value); }
+    @Override protected List<Object> depth(List<Object> selector, int value) { return add(selector, value); }
+    @Override protected List<Object> enabled(List<Object> selector, boolean value) { return add(selector, value); }
+    @Override protected List<Object> focusable(List<Object> selector, boolean value) { return add(selector, value); }
+    @Override protected List<Object> focused(List<Object> selector, boolean value) { return add(selector, value); }
+    @Override protected List<Object> hasChild(List<Object> selector, List<Object> value) { return add(selector, value); }
+    @Override protected List<Object> hasDescendant(List<Object> selector, List<Object> value, int maxDepth) { return add(selector, value); }
+    @Override protected List<Object> longClickable(List<Object> selector, boolean value) { return add(selector, value); }
+    @Override protected List<Object> res(List<Object> selector, Pattern value) { return add(selector, value); }
+    @Override protected List<Object> scrollable(List<Object> selector, boolean value) { return add(selector, value); }
+    @Override protected List<Object> selected(List<Object> selector, boolean value) { return add(selector, value); }
+  }
+
+  @Param({"0", "1"})
+  public int selector;
+
+  private final ListSelectors selectors = new ListSelectors();
+  private JSONObject params;
+
+  @Setup
+  public void setup() throws JSONException {
+    params = new JSONObject();
+    params.put("selector", new JSONObject(SELECTORS[selector]));
+  }
+
+  @Benchmark
+  public List<Object> parse() throws JSONException {
+    return selectors.parse(params);
+  }
+
+  /**
+   * The driver keys its selector cache with the selector source, this runs on every call.
+   */
+  @Benchmark
+  public String cacheKey() throws JSONException {
+    return params.getJSONObject("selector").toString();
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import java.util.Random;
+
+/**
+ * In-memory stand-in for an accessibility node, with a mix of populated and
+ * missing text properties similar to a real app hierarchy.
+ */
+class SyntheticNode {
+  final CharSequence desc;
+  final CharSequence res;
+  final CharSequence text;
+  final int left;
+  final int top;
+  final int right;
+  final int bottom;
+  final boolean clickable;
+  final boolean enabled;
+  final boolean focusable;
+  final boolean scrollable;
+  final SyntheticNode[] children;
+
+  private SyntheticNode(Random random, int index, int left, int top, int right, int bottom, SyntheticNode[] children) {
+    this.desc = random.nextInt(4) == 0 ? "Description of item " + index : null;
+    this.res = random.nextInt(2) == 0 ? "com.example.app:id/item_" + index : null;
+    this.text = random.nextInt(3) == 0 ? "Item " + index + " \u2014 \u00e9t\u00e9 \"quoted\"" : null;
+    this.left = left;
+    this.top = top;
+    this.right = right;
+    this.bottom = bottom;
+    this.clickable = random.nextInt(3) == 0;
+    this.enabled = random.nextInt(10) != 0;
+    this.focusable = clickable;
+    this.scrollable = children.length > 0 && random.nextInt(8) == 0;
+    this.children = children;
+  }
+
+  /**
+   * Builds a complete tree where every inner node has the given number of children.
+   */
+  static SyntheticNode tree(int breadth, int depth, long seed) {
+    return build(new Random(seed), new int[1], breadth, depth, 0, 0, 1080, 1920);
+  }
+
+  static int size(int breadth, int depth) {
+    int size = 0;
+    for (int level = 0, count = 1; level < depth; ++level, count *= breadth)
+      size += count;
+    return size;
+  }
+
+  private static SyntheticNode build(Random random, int[] counter, int breadth, int depth, int left, int top, int right, int bottom) {
+    int index = counter[0]++;
+    SyntheticNode[] children = new SyntheticNode[depth > 1 ? breadth : 0];
+    int height = Math.max(1, (bottom - top) / Math.max(1, children.length));
+    for (int i = 0; i < children.length; ++i)
+      children[i] = build(random, counter, breadth, depth - 1, left, top + i * height, right, top + (i + 1) * height);
+    return new SyntheticNode(random, index, left, top, right, bottom, children);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+class SyntheticNodes implements A11yNodes<SyntheticNode> {
+  static final SyntheticNodes INSTANCE = new SyntheticNodes();
+
+  @Override
+  public int getChildCount(SyntheticNode node) {
+    return node.children.length;
+  }
+
+  @Override
+  public SyntheticNode getChild(SyntheticNode node, int index) {
+    return node.children[index];
+  }
+
+  @Override
+  public void recycle(SyntheticNode node) {
+  }
+
+  @Override
+  public void getBounds(SyntheticNode node, int[] bounds) {
+    bounds[0] = node.left;
+    bounds[1] = node.top;
+    bounds[2] = node.right;
+    bounds[3] = node.bottom;
+  }
+
+  @Override
+  public CharSequence getContentDescription(SyntheticNode node) {
+    return node.desc;
+  }
+
+  @Override
+  public CharSequence getViewIdResourceName(SyntheticNode node) {
+    return node.res;
+  }
+
+  @Override
+  public CharSequence getText(SyntheticNode node) {
+    return node.text;
+  }
+
+  @Override
+  public boolean isCheckable(SyntheticNode node) {
+    return false;
+  }
+
+  @Override
+  public boolean isChecked(SyntheticNode node) {
+    return false;
+  }
+
+  @Override
+  public boolean isClickable(SyntheticNode node) {
+    return node.clickable;
+  }
+
+  @Override
+  public boolean isEnabled(SyntheticNode node) {
+    return node.enabled;
+  }
+
+  @Override
+  public boolean isFocusable(SyntheticNode node) {
+    return node.focusable;
+  }
+
+  @Override
+  public boolean isFocused(SyntheticNode node) {
+    return false;
+  }
+
+  @Override
+  public boolean isLongClickable(SyntheticNode node) {
+    return false;
+  }
+
+  @Override
+  public boolean isScrollable(SyntheticNode node) {
+    return node.scrollable;
+  }
+
+  @Override
+  public boolean isSelected(SyntheticNode node) {
+    return false;
+  }
+}
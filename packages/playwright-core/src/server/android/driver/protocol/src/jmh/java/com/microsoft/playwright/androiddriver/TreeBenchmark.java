@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Serializes complete synthetic trees, breadth^0 + ... + breadth^(depth - 1) nodes each.
+ */
+@State(Scope.Thread)
+public class TreeBenchmark {
+  @Param({"4"})
+  public int breadth;
+
+  @Param({"3", "5", "7"})
+  public int depth;
+
+  private final A11yTreeSerializer<SyntheticNode> serializer = new A11yTreeSerializer<>(SyntheticNodes.INSTANCE);
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private SyntheticNode root;
+  private TreeSnapshots<SyntheticNode> snapshots;
+  private long generation;
+  private int version;
+
+  @Setup
+  public void setup() throws JSONException {
+    root = SyntheticNode.tree(breadth, depth, 42);
+    snapshots = new TreeSnapshots<>(SyntheticNodes.INSTANCE);
+    version = snapshots.snapshot(root, generation).getInt("version");
+  }
+
+  @Benchmark
+  public int writeJson() throws IOException {
+    out.reset();
+    JsonValueWriter writer = new JsonValueWriter(out);
+    serializer.write(writer, root);
+    writer.flush();
+    return out.size();
+  }
+
+  @Benchmark
+  public int writeMsgpack() throws IOException {
+    out.reset();
+    serializer.write(new MessagePack.Writer(out), root);
+    return out.size();
+  }
+
+  @Benchmark
+  public JSONObject snapshot() throws JSONException {
+    return new TreeSnapshots<>(SyntheticNodes.INSTANCE).snapshot(root, 0);
+  }
+
+  /**
+   * The screen changed but the tree didn't: the whole tree is walked and diffed to an empty delta.
+   */
+  @Benchmark
+  public JSONObject delta() throws JSONException {
+    JSONObject result = snapshots.delta(root, ++generation, version);
+    version = result.getInt("version");
+    return result;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+/**
+ * Read access to accessibility nodes of type N, so that the tree serializers
+ * don't depend on the platform node class.
+ *
+ * @param <N> node type
+ */
+public interface A11yNodes<N> {
+  int getChildCount(N node);
+
+  /**
+   * Returns null if the child is gone, a returned child is released with {@link #recycle}.
+   */
+  N getChild(N node, int index);
+
+  void recycle(N node);
+
+  /**
+   * Fills the on-screen bounds as left, top, right, bottom.
+   */
+  void getBounds(N node, int[] bounds);
+
+  CharSequence getContentDescription(N node);
+  CharSequence getViewIdResourceName(N node);
+  CharSequence getText(N node);
+  boolean isCheckable(N node);
+  boolean isChecked(N node);
+  boolean isClickable(N node);
+  boolean isEnabled(N node);
+  boolean isFocusable(N node);
+  boolean isFocused(N node);
+  boolean isLongClickable(N node);
+  boolean isScrollable(N node);
+  boolean isSelected(N node);
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Serializes accessibility nodes, either one at a time into a JSONObject or
+ * a whole subtree straight into a {@link ValueWriter}.
+ */
+public class A11yTreeSerializer<N> {
+  private final A11yNodes<N> nodes;
+
+  public A11yTreeSerializer(A11yNodes<N> nodes) {
+    this.nodes = nodes;
+  }
+
+  public JSONObject info(N node) throws JSONException {
+    JSONObject info = new JSONObject();
+    int[] bounds = new int[4];
+    nodes.getBounds(node, bounds);
+    info.put("desc", nodes.getContentDescription(node));
+    info.put("res",  nodes.getViewIdResourceName(node));
+    info.put("text", nodes.getText(node));
+    info.put("bounds", serializeRect(bounds));
+    info.put("checkable", nodes.isCheckable(node));
+    info.put("checked", nodes.isChecked(node));
+    info.put("clickable", nodes.isClickable(node));
+    info.put("enabled", nodes.isEnabled(node));
+    info.put("focusable", nodes.isFocusable(node));
+    info.put("focused", nodes.isFocused(node));
+    info.put("longClickable", nodes.isLongClickable(node));
+    info.put("scrollable", nodes.isScrollable(node));
+    info.put("selected", nodes.isSelected(node));
+    return info;
+  }
+
+  public void write(ValueWriter writer, N root) throws IOException {
+    write(writer, root, new int[4]);
+  }
+
+  private static JSONObject serializeRect(int[] bounds) throws JSONException {
+    JSONObject rectObject = new JSONObject();
+    rectObject.put("x",  bounds[0]);
+    rectObject.put("y",  bounds[1]);
+    rectObject.put("width",  bounds[2] - bounds[0]);
+    rectObject.put("height",  bounds[3] - bounds[1]);
+    return rectObject;
+  }
+
+  private static void serializeRect(ValueWriter writer, int[] bounds) throws IOException {
+    writer.beginObject(4);
+    writer.name("x").value(bounds[0]);
+    writer.name("y").value(bounds[1]);
+    writer.name("width").value(bounds[2] - bounds[0]);
+    writer.name("height").value(bounds[3] - bounds[1]);
+    writer.endObject();
+  }
+
+  private static void serializeText(ValueWriter writer, String name, CharSequence value) throws IOException {
+    if (value != null)
+      writer.name(name).value(value.toString());
+  }
+
+  @SuppressWarnings("unchecked")
+  private void write(ValueWriter writer, N node, int[] bounds) throws IOException {
+    nodes.getBounds(node, bounds);
+    CharSequence desc = nodes.getContentDescription(node);
+    CharSequence res = nodes.getViewIdResourceName(node);
+    CharSequence text = nodes.getText(node);
+    // Children are fetched one level at a time, since the encoding needs the count upfront.
+    Object[] children = new Object[nodes.getChildCount(node)];
+    int childCount = 0;
+    try {
+      for (int i = 0; i < children.length; ++i) {
+        N child = nodes.getChild(node, i);
+        if (child != null)
+          children[childCount++] = child;
+      }
+
+      int size = 10;
+      if (desc != null)
+        ++size;
+      if (res != null)
+        ++size;
+      if (text != null)
+        ++size;
+      if (childCount > 0)
+        ++size;
+      writer.beginObject(size);
+      serializeText(writer, "desc", desc);
+      serializeText(writer, "res", res);
+      serializeText(writer, "text", text);
+      writer.name("bounds");
+      serializeRect(writer, bounds);
+      writer.name("checkable").value(nodes.isCheckable(node));
+      writer.name("checked").value(nodes.isChecked(node));
+      writer.name("clickable").value(nodes.isClickable(node));
+      writer.name("enabled").value(nodes.isEnabled(node));
+      writer.name("focusable").value(nodes.isFocusable(node));
+      writer.name("focused").value(nodes.isFocused(node));
+      writer.name("longClickable").value(nodes.isLongClickable(node));
+      writer.name("scrollable").value(nodes.isScrollable(node));
+      writer.name("selected").value(nodes.isSelected(node));
+      if (childCount > 0) {
+        writer.name("children");
+        writer.beginArray(childCount);
+        for (int i = 0; i < childCount; ++i) {
+          // Only the current path is alive, so the nodes held stay proportional to the tree depth.
+          // The encoded bytes are bounded as well only when the connection negotiated a chunk size.
+          N child = (N) children[i];
+          write(writer, child, bounds);
+          children[i] = null;
+          nodes.recycle(child);
+        }
+        writer.endArray();
+      }
+      writer.endObject();
+    } finally {
+      // The walk failed halfway, the children that were not written are still ours to recycle.
+      for (int i = 0; i < childCount; ++i) {
+        if (children[i] != null)
+          nodes.recycle((N) children[i]);
+      }
+    }
+  }
+}
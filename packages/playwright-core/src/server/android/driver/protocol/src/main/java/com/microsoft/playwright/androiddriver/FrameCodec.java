@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes messages into length-prefixed frames and decodes them back, in
+ * the encoding and with the compression negotiated for one connection.
+ *
+ * Frames at or above the compression threshold are sent as zlib streams when
+ * that makes them smaller, the high bit of their length prefix marks them as
+ * compressed.
+ *
+ * With a chunk size set, a streamed result that outgrows it while it is
+ * encoded is sent as several frames: the next bit of the length prefix marks
+ * a frame whose message continues in the following one, and the message ends
+ * with the first frame without it. Every chunk is compressed on its own, the
+ * message is the concatenation of the decompressed chunks.
+ */
+public class FrameCodec {
+  public static final int COMPRESSED_FLAG = 0x80000000;
+  public static final int CONTINUED_FLAG = 0x40000000;
+  // Buffers that grew past this for a large message are dropped once it is written or read.
+  public static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+  // Messages are serialized by the writing thread into its own reusable buffer.
+  private static final ThreadLocal<Encoder> encoder = new ThreadLocal<Encoder>() {
+    @Override
+    protected Encoder initialValue() {
+      return new Encoder();
+    }
+  };
+  // Every frame is a complete zlib stream, so the deflater and its output are per thread as well.
+  private static final ThreadLocal<Deflater> deflater = new ThreadLocal<Deflater>() {
+    @Override
+    protected Deflater initialValue() {
+      return new Deflater();
+    }
+  };
+  private static final ThreadLocal<FrameBuffer> deflateBuffer = new ThreadLocal<FrameBuffer>() {
+    @Override
+    protected FrameBuffer initialValue() {
+      return new FrameBuffer();
+    }
+  };
+
+  /**
+   * Exposes the backing array so that frames can be written and deflated without a copy.
+   */
+  public static class FrameBuffer extends ByteArrayOutputStream {
+    public byte[] array() {
+      return buf;
+    }
+
+    void deflate(Deflater deflater) {
+      while (!deflater.finished()) {
+        if (count == buf.length)
+          buf = Arrays.copyOf(buf, Math.max(buf.length * 2, 1024));
+        count += deflater.deflate(buf, count, buf.length - count);
+      }
+    }
+
+    /**
+     * Empties the buffer and gives an oversized backing array back to the GC.
+     */
+    void trim() {
+      if (buf.length > MAX_RETAINED_BUFFER_SIZE)
+        buf = new byte[32];
+      count = 0;
+    }
+  }
+
+  private static class Encoder {
+    final FrameBuffer buffer = new FrameBuffer();
+    final JsonValueWriter json = new JsonValueWriter(buffer);
+    final MessagePack.Writer msgpack = new MessagePack.Writer(buffer);
+  }
+
+  /**
+   * Sends the leading chunks of a message that outgrew the chunk size while
+   * it was encoded, see {@link #encode(JSONObject, ChunkWriter)}.
+   */
+  public interface ChunkWriter {
+    /**
+     * Must write the chunk with {@link #writeFrame(DataOutputStream, FrameBuffer, FrameBuffer, boolean)}
+     * and nothing else may be written to the stream until the final frame of the message.
+     */
+    void write(FrameBuffer chunk) throws IOException;
+  }
+
+  /**
+   * Hands the frame buffer to the chunk writer whenever it reached the chunk
+   * size at the end of a node, the last part stays for the final frame.
+   */
+  private static class ChunkingWriter implements ValueWriter {
+    private final Encoder encoder;
+    private final ValueWriter writer;
+    private final int chunkSize;
+    private final ChunkWriter chunks;
+    private int depth;
+
+    ChunkingWriter(Encoder encoder, ValueWriter writer, int chunkSize, ChunkWriter chunks) {
+      this.encoder = encoder;
+      this.writer = writer;
+      this.chunkSize = chunkSize;
+      this.chunks = chunks;
+    }
+
+    @Override
+    public ValueWriter beginObject(int size) throws IOException {
+      ++depth;
+      writer.beginObject(size);
+      return this;
+    }
+
+    @Override
+    public ValueWriter endObject() throws IOException {
+      writer.endObject();
+      return afterContainer();
+    }
+
+    @Override
+    public ValueWriter beginArray(int size) throws IOException {
+      ++depth;
+      writer.beginArray(size);
+      return this;
+    }
+
+    @Override
+    public ValueWriter endArray() throws IOException {
+      writer.endArray();
+      return afterContainer();
+    }
+
+    @Override
+    public ValueWriter name(String name) throws IOException {
+      writer.name(name);
+      return this;
+    }
+
+    @Override
+    public ValueWriter value(String value) throws IOException {
+      writer.value(value);
+      return this;
+    }
+
+    @Override
+    public ValueWriter value(long value) throws IOException {
+      writer.value(value);
+      return this;
+    }
+
+    @Override
+    public ValueWriter value(double value) throws IOException {
+      writer.value(value);
+      return this;
+    }
+
+    @Override
+    public ValueWriter value(boolean value) throws IOException {
+      writer.value(value);
+      return this;
+    }
+
+    @Override
+    public ValueWriter nullValue() throws IOException {
+      writer.nullValue();
+      return this;
+    }
+
+    private ValueWriter afterContainer() throws IOException {
+      // The outermost container closes the message, its end goes out in the final frame.
+      if (--depth > 0 && encoder.buffer.size() >= chunkSize) {
+        if (writer == encoder.json)
+          encoder.json.flush();
+        chunks.write(encoder.buffer);
+        encoder.buffer.reset();
+      }
+      return this;
+    }
+  }
+
+  // Frames are only decoded by the connection's reader thread.
+  private final JsonValueReader jsonReader = new JsonValueReader();
+  private volatile boolean msgpack;
+  // Zero when compression is off.
+  private volatile int compressionThreshold;
+  // Zero when streamed results are sent in a single frame.
+  private volatile int chunkSize;
+
+  public void setMsgpack(boolean msgpack) {
+    this.msgpack = msgpack;
+  }
+
+  public void setCompressionThreshold(int compressionThreshold) {
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Returns null if the frame doesn't hold an object. Must not be called
+   * concurrently, the connection's reader thread owns the decoding state.
+   */
+  public JSONObject decode(byte[] buffer, int length) throws JSONException {
+    Object message = msgpack
+        ? new MessagePack.Reader(buffer, 0, length).read()
+        : jsonReader.reset(buffer, 0, length).read();
+    return message instanceof JSONObject ? (JSONObject) message : null;
+  }
+
+  /**
+   * Serializes the message into the calling thread's frame buffer, which is
+   * reused by the next call on the same thread. Pass the result to
+   * {@link #writeFrame} so that an oversized buffer gets trimmed.
+   */
+  public FrameBuffer encode(JSONObject message) throws IOException {
+    return encode(message, null);
+  }
+
+  /**
+   * Same as {@link #encode(JSONObject)}, but when a chunk size is set the
+   * message is sent through the chunk writer as it grows, and the returned
+   * buffer holds its last part. The chunk writer is not called for messages
+   * that stay below the chunk size.
+   */
+  public FrameBuffer encode(JSONObject message, ChunkWriter chunks) throws IOException {
+    Encoder encoder = FrameCodec.encoder.get();
+    encoder.buffer.reset();
+    int chunkSize = chunks != null ? this.chunkSize : 0;
+    try {
+      if (msgpack) {
+        writeValue(chunkSize > 0 ? new ChunkingWriter(encoder, encoder.msgpack, chunkSize, chunks) : encoder.msgpack, message);
+      } else {
+        encoder.json.reset();
+        writeValue(chunkSize > 0 ? new ChunkingWriter(encoder, encoder.json, chunkSize, chunks) : encoder.json, message);
+        encoder.json.flush();
+      }
+    } catch (IOException | RuntimeException e) {
+      // Nothing is going to write this frame, don't keep what it grew the buffer to.
+      encoder.buffer.trim();
+      throw e;
+    }
+    return encoder.buffer;
+  }
+
+  /**
+   * Returns the deflated frame, or null when compression is off, the frame is
+   * below the threshold or deflating doesn't make it smaller.
+   */
+  public FrameBuffer deflate(FrameBuffer frame) {
+    int threshold = compressionThreshold;
+    if (threshold == 0 || frame.size() < threshold)
+      return null;
+    Deflater deflater = FrameCodec.deflater.get();
+    deflater.reset();
+    deflater.setInput(frame.array(), 0, frame.size());
+    deflater.finish();
+    FrameBuffer compressed = deflateBuffer.get();
+    compressed.reset();
+    compressed.deflate(deflater);
+    return compressed.size() < frame.size() ? compressed : null;
+  }
+
+  /**
+   * Writes a single frame and returns its size on the wire. The buffers are
+   * trimmed afterwards, so that a thread doesn't keep its largest frame ever
+   * around, once raw and once deflated.
+   */
+  public static int writeFrame(DataOutputStream out, FrameBuffer frame, FrameBuffer compressed) throws IOException {
+    return writeFrame(out, frame, compressed, false);
+  }
+
+  /**
+   * @param continued whether the frame is a chunk of a message that continues in the next frame.
+   */
+  public static int writeFrame(DataOutputStream out, FrameBuffer frame, FrameBuffer compressed, boolean continued) throws IOException {
+    FrameBuffer sent = compressed != null ? compressed : frame;
+    int size = sent.size();
+    try {
+      out.writeInt((compressed != null ? COMPRESSED_FLAG : 0) | (continued ? CONTINUED_FLAG : 0) | size);
+      sent.writeTo(out);
+    } finally {
+      frame.trim();
+      if (compressed != null)
+        compressed.trim();
+    }
+    return size + 4;
+  }
+
+  public static void writeValue(ValueWriter writer, Object value) throws IOException {
+    if (value == null || value == JSONObject.NULL) {
+      writer.nullValue();
+    } else if (value instanceof StreamingResult) {
+      ((StreamingResult) value).write(writer);
+    } else if (value instanceof JSONObject) {
+      JSONObject object = (JSONObject) value;
+      writer.beginObject(object.length());
+      // Raw in some org.json builds.
+      Iterator<?> keys = object.keys();
+      while (keys.hasNext()) {
+        String key = (String) keys.next();
+        writer.name(key);
+        writeValue(writer, object.opt(key));
+      }
+      writer.endObject();
+    } else if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      writer.beginArray(array.length());
+      for (int i = 0; i < array.length(); ++i)
+        writeValue(writer, array.opt(i));
+      writer.endArray();
+    } else if (value instanceof Boolean) {
+      writer.value((boolean) (Boolean) value);
+    } else if (value instanceof Double || value instanceof Float) {
+      writer.value(((Number) value).doubleValue());
+    } else if (value instanceof Number) {
+      writer.value(((Number) value).longValue());
+    } else {
+      writer.value(value.toString());
+    }
+  }
+}
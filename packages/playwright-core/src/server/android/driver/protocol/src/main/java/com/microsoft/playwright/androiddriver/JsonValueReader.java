@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parses UTF-8 JSON straight from a frame buffer into org.json types,
+ * without decoding the whole frame into a String first. Values are typed the
+ * way JSONTokener types them, integers become Integer or Long when they fit.
+ *
+ * A reader is reset for each frame, so the scratch buffer is reused across
+ * frames. It is not thread safe.
+ */
+public class JsonValueReader {
+  private byte[] buffer;
+  private int position;
+  private int limit;
+  private char[] chars = new char[256];
+
+  public JsonValueReader reset(byte[] buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.position = offset;
+    this.limit = offset + length;
+    return this;
+  }
+
+  /**
+   * Reads a single value that has to span the rest of the buffer.
+   */
+  public Object read() throws JSONException {
+    Object result = readValue();
+    skipWhitespace();
+    if (position != limit)
+      throw syntaxError("Unexpected data after the value");
+    return result;
+  }
+
+  private Object readValue() throws JSONException {
+    skipWhitespace();
+    if (position == limit)
+      throw syntaxError("Unexpected end of input");
+    int c = buffer[position] & 0xff;
+    switch (c) {
+      case '{': ++position; return readObject();
+      case '[': ++position; return readArray();
+      case '"': ++position; return readString();
+      case 't': return readLiteral("true", Boolean.TRUE);
+      case 'f': return readLiteral("false", Boolean.FALSE);
+      case 'n': return readLiteral("null", JSONObject.NULL);
+    }
+    if (c == '-' || (c >= '0' && c <= '9'))
+      return readNumber();
+    throw syntaxError("Unexpected character '" + (char) c + "'");
+  }
+
+  private JSONObject readObject() throws JSONException {
+    JSONObject result = new JSONObject();
+    if (consume('}'))
+      return result;
+    do {
+      skipWhitespace();
+      if (!consume('"'))
+        throw syntaxError("Expected a name");
+      String name = readString();
+      skipWhitespace();
+      if (!consume(':'))
+        throw syntaxError("Expected ':' after " + name);
+      result.put(name, readValue());
+    } while (consume(','));
+    if (!consume('}'))
+      throw syntaxError("Expected ',' or '}'");
+    return result;
+  }
+
+  private JSONArray readArray() throws JSONException {
+    JSONArray result = new JSONArray();
+    if (consume(']'))
+      return result;
+    do {
+      result.put(readValue());
+    } while (consume(','));
+    if (!consume(']'))
+      throw syntaxError("Expected ',' or ']'");
+    return result;
+  }
+
+  private String readString() throws JSONException {
+    int length = 0;
+    while (true) {
+      if (position == limit)
+        throw syntaxError("Unterminated string");
+      int b = buffer[position++] & 0xff;
+      if (length + 2 > chars.length)
+        chars = Arrays.copyOf(chars, chars.length * 2);
+      if (b == '"')
+        return new String(chars, 0, length);
+      if (b == '\\') {
+        chars[length++] = readEscape();
+      } else if (b < 0x80) {
+        chars[length++] = (char) b;
+      } else if (b < 0xe0) {
+        chars[length++] = (char) (((b & 0x1f) << 6) | continuation());
+      } else if (b < 0xf0) {
+        chars[length++] = (char) (((b & 0x0f) << 12) | (continuation() << 6) | continuation());
+      } else {
+        int codePoint = ((b & 0x07) << 18) | (continuation() << 12) | (continuation() << 6) | continuation();
+        chars[length++] = Character.highSurrogate(codePoint);
+        chars[length++] = Character.lowSurrogate(codePoint);
+      }
+    }
+  }
+
+  private char readEscape() throws JSONException {
+    if (position == limit)
+      throw syntaxError("Unterminated escape sequence");
+    int c = buffer[position++];
+    switch (c) {
+      case '"': return '"';
+      case '\\': return '\\';
+      case '/': return '/';
+      case 'b': return '\b';
+      case 'f': return '\f';
+      case 'n': return '\n';
+      case 'r': return '\r';
+      case 't': return '\t';
+      case 'u':
+        if (limit - position < 4)
+          throw syntaxError("Unterminated escape sequence");
+        int result = 0;
+        for (int i = 0; i < 4; ++i) {
+          int digit = Character.digit(buffer[position++], 16);
+          if (digit < 0)
+            throw syntaxError("Invalid escape sequence");
+          result = (result << 4) | digit;
+        }
+        return (char) result;
+    }
+    throw syntaxError("Invalid escape sequence");
+  }
+
+  private int continuation() throws JSONException {
+    if (position == limit || (buffer[position] & 0xc0) != 0x80)
+      throw syntaxError("Malformed UTF-8");
+    return buffer[position++] & 0x3f;
+  }
+
+  private Object readNumber() throws JSONException {
+    int start = position;
+    boolean integer = true;
+    while (position < limit) {
+      int c = buffer[position];
+      if (c == '.' || c == 'e' || c == 'E')
+        integer = false;
+      else if (c != '-' && c != '+' && (c < '0' || c > '9'))
+        break;
+      ++position;
+    }
+    int length = position - start;
+    boolean negative = buffer[start] == '-';
+    // Up to 18 digits can't overflow a long.
+    if (integer && length - (negative ? 1 : 0) <= 18 && length > (negative ? 1 : 0)) {
+      long value = 0;
+      for (int i = negative ? start + 1 : start; i < position; ++i) {
+        int digit = buffer[i] - '0';
+        if (digit < 0 || digit > 9)
+          throw syntaxError("Malformed number");
+        value = value * 10 + digit;
+      }
+      if (negative)
+        value = -value;
+      if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+        return (int) value;
+      return value;
+    }
+    String literal = new String(buffer, start, length, StandardCharsets.US_ASCII);
+    try {
+      if (integer) {
+        try {
+          return Long.valueOf(literal);
+        } catch (NumberFormatException e) {
+          // Out of the long range.
+        }
+      }
+      return Double.valueOf(literal);
+    } catch (NumberFormatException e) {
+      throw syntaxError("Malformed number " + literal);
+    }
+  }
+
+  private Object readLiteral(String literal, Object value) throws JSONException {
+    if (limit - position < literal.length())
+      throw syntaxError("Unexpected end of input");
+    for (int i = 0; i < literal.length(); ++i) {
+      if (buffer[position + i] != literal.charAt(i))
+        throw syntaxError("Unexpected literal");
+    }
+    position += literal.length();
+    return value;
+  }
+
+  private boolean consume(char c) {
+    skipWhitespace();
+    if (position < limit && buffer[position] == c) {
+      ++position;
+      return true;
+    }
+    return false;
+  }
+
+  private void skipWhitespace() {
+    while (position < limit) {
+      byte c = buffer[position];
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+        return;
+      ++position;
+    }
+  }
+
+  private JSONException syntaxError(String message) {
+    return new JSONException(message + " at " + position);
+  }
+}
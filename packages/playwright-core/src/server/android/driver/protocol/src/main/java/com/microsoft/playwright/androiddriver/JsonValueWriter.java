@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Compact UTF-8 JSON writer. Characters are encoded into a small scratch
+ * buffer that is handed to the stream in chunks, call flush() when done.
+ * The writer can be reused for the next value after reset().
+ */
+public class JsonValueWriter implements ValueWriter {
+  private final OutputStream out;
+  private final byte[] scratch = new byte[8192];
+  private int position;
+  // Whether the container at each depth has no elements yet.
+  private boolean[] empty = new boolean[32];
+  private int depth;
+  private boolean afterName;
+
+  public JsonValueWriter(OutputStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public ValueWriter beginObject(int size) throws IOException {
+    beforeValue();
+    writeByte('{');
+    push();
+    return this;
+  }
+
+  @Override
+  public ValueWriter endObject() throws IOException {
+    --depth;
+    writeByte('}');
+    return this;
+  }
+
+  @Override
+  public ValueWriter beginArray(int size) throws IOException {
+    beforeValue();
+    writeByte('[');
+    push();
+    return this;
+  }
+
+  @Override
+  public ValueWriter endArray() throws IOException {
+    --depth;
+    writeByte(']');
+    return this;
+  }
+
+  @Override
+  public ValueWriter name(String name) throws IOException {
+    beforeValue();
+    writeString(name);
+    writeByte(':');
+    afterName = true;
+    return this;
+  }
+
+  @Override
+  public ValueWriter value(String value) throws IOException {
+    if (value == null)
+      return nullValue();
+    beforeValue();
+    writeString(value);
+    return this;
+  }
+
+  @Override
+  public ValueWriter value(long value) throws IOException {
+    beforeValue();
+    writeAscii(Long.toString(value));
+    return this;
+  }
+
+  @Override
+  public ValueWriter value(double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value))
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    beforeValue();
+    writeAscii(Double.toString(value));
+    return this;
+  }
+
+  @Override
+  public ValueWriter value(boolean value) throws IOException {
+    beforeValue();
+    writeAscii(value ? "true" : "false");
+    return this;
+  }
+
+  @Override
+  public ValueWriter nullValue() throws IOException {
+    beforeValue();
+    writeAscii("null");
+    return this;
+  }
+
+  /**
+   * Discards unflushed output and any state left by an interrupted write.
+   */
+  public void reset() {
+    position = 0;
+    depth = 0;
+    afterName = false;
+  }
+
+  public void flush() throws IOException {
+    out.write(scratch, 0, position);
+    position = 0;
+  }
+
+  private void push() {
+    if (++depth == empty.length)
+      empty = Arrays.copyOf(empty, depth * 2);
+    empty[depth] = true;
+  }
+
+  private void beforeValue() throws IOException {
+    if (afterName) {
+      afterName = false;
+      return;
+    }
+    if (depth == 0)
+      return;
+    if (!empty[depth])
+      writeByte(',');
+    empty[depth] = false;
+  }
+
+  private void writeString(String value) throws IOException {
+    writeByte('"');
+    for (int i = 0, length = value.length(); i < length; ++i) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        if (c == '"' || c == '\\') {
+          writeByte('\\');
+          writeByte(c);
+        } else if (c < 0x20) {
+          writeEscape(c);
+        } else {
+          writeByte(c);
+        }
+      } else if (c < 0x800) {
+        writeByte(0xc0 | (c >> 6));
+        writeByte(0x80 | (c & 0x3f));
+      } else if (c == '\u2028' || c == '\u2029') {
+        // Valid JSON, but not valid JavaScript source.
+        writeEscape(c);
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        writeByte(0xf0 | (codePoint >> 18));
+        writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+        writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+        writeByte(0x80 | (codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        // Unpaired surrogates can't be encoded, same replacement as String.getBytes().
+        writeByte('?');
+      } else {
+        writeByte(0xe0 | (c >> 12));
+        writeByte(0x80 | ((c >> 6) & 0x3f));
+        writeByte(0x80 | (c & 0x3f));
+      }
+    }
+    writeByte('"');
+  }
+
+  private void writeEscape(char c) throws IOException {
+    writeByte('\\');
+    switch (c) {
+      case '\b': writeByte('b'); return;
+      case '\f': writeByte('f'); return;
+      case '\n': writeByte('n'); return;
+      case '\r': writeByte('r'); return;
+      case '\t': writeByte('t'); return;
+    }
+    writeByte('u');
+    for (int shift = 12; shift >= 0; shift -= 4)
+      writeByte("0123456789abcdef".charAt((c >> shift) & 0xf));
+  }
+
+  private void writeAscii(String value) throws IOException {
+    for (int i = 0; i < value.length(); ++i)
+      writeByte(value.charAt(i));
+  }
+
+  private void writeByte(int b) throws IOException {
+    if (position == scratch.length)
+      flush();
+    scratch[position++] = (byte) b;
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal MessagePack codec covering the JSON data model: nil, booleans,
+ * integers, floats, strings, arrays and maps with string keys. Decoded values
+ * are mapped onto org.json types so that command handlers stay encoding agnostic,
+ * and integers are typed like {@link JsonValueReader} types them.
+ */
+public class MessagePack {
+
+  public static class Writer implements ValueWriter {
+    private final OutputStream out;
+
+    public Writer(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public ValueWriter beginObject(int size) throws IOException {
+      if (size < 16) {
+        out.write(0x80 | size);
+      } else if (size < 0x10000) {
+        out.write(0xde);
+        writeShort(size);
+      } else {
+        out.write(0xdf);
+        writeInt(size);
+      }
+      return this;
+    }
+
+    @Override
+    public ValueWriter endObject() {
+      return this;
+    }
+
+    @Override
+    public ValueWriter beginArray(int size) throws IOException {
+      if (size < 16) {
+        out.write(0x90 | size);
+      } else if (size < 0x10000) {
+        out.write(0xdc);
+        writeShort(size);
+      } else {
+        out.write(0xdd);
+        writeInt(size);
+      }
+      return this;
+    }
+
+    @Override
+    public ValueWriter endArray() {
+      return this;
+    }
+
+    @Override
+    public ValueWriter name(String name) throws IOException {
+      return value(name);
+    }
+
+    @Override
+    public ValueWriter value(String value) throws IOException {
+      if (value == null)
+        return nullValue();
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      int length = bytes.length;
+      if (length < 32) {
+        out.write(0xa0 | length);
+      } else if (length < 0x100) {
+        out.write(0xd9);
+        out.write(length);
+      } else if (length < 0x10000) {
+        out.write(0xda);
+        writeShort(length);
+      } else {
+        out.write(0xdb);
+        writeInt(length);
+      }
+      out.write(bytes, 0, length);
+      return this;
+    }
+
+    @Override
+    public ValueWriter value(long value) throws IOException {
+      if (value >= 0 && value < 0x80) {
+        out.write((int) value);
+      } else if (value >= -32 && value < 0) {
+        out.write((int) value & 0xff);
+      } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+        out.write(0xd2);
+        writeInt((int) value);
+      } else {
+        out.write(0xd3);
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+      }
+      return this;
+    }
+
+    @Override
+    public ValueWriter value(double value) throws IOException {
+      long bits = Double.doubleToLongBits(value);
+      out.write(0xcb);
+      writeInt((int) (bits >>> 32));
+      writeInt((int) bits);
+      return this;
+    }
+
+    @Override
+    public ValueWriter value(boolean value) throws IOException {
+      out.write(value ? 0xc3 : 0xc2);
+      return this;
+    }
+
+    @Override
+    public ValueWriter nullValue() throws IOException {
+      out.write(0xc0);
+      return this;
+    }
+
+    private void writeShort(int value) throws IOException {
+      out.write(value >>> 8);
+      out.write(value);
+    }
+
+    private void writeInt(int value) throws IOException {
+      out.write(value >>> 24);
+      out.write(value >>> 16);
+      out.write(value >>> 8);
+      out.write(value);
+    }
+  }
+
+  public static class Reader {
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    public Reader(byte[] buffer, int offset, int length) {
+      this.buffer = buffer;
+      this.position = offset;
+      this.limit = offset + length;
+    }
+
+    /**
+     * Reads a single value that has to span the rest of the buffer.
+     */
+    public Object read() throws JSONException {
+      Object result = readValue();
+      if (position != limit)
+        throw new JSONException("Unexpected data after the MessagePack value");
+      return result;
+    }
+
+    private Object readValue() throws JSONException {
+      int type = readByte();
+      if (type <= 0x7f)
+        return type;
+      if (type >= 0xe0)
+        return (int) (byte) type;
+      if (type >= 0x80 && type <= 0x8f)
+        return readMap(type & 0x0f);
+      if (type >= 0x90 && type <= 0x9f)
+        return readArray(type & 0x0f);
+      if (type >= 0xa0 && type <= 0xbf)
+        return readString(type & 0x1f);
+      switch (type) {
+        case 0xc0: return JSONObject.NULL;
+        case 0xc2: return false;
+        case 0xc3: return true;
+        case 0xca: return (double) Float.intBitsToFloat(readInt());
+        case 0xcb: return Double.longBitsToDouble(readLong());
+        case 0xcc: return readByte();
+        case 0xcd: return readShort();
+        case 0xce: return integer(readInt() & 0xffffffffL);
+        case 0xcf: return unsigned(readLong());
+        case 0xd0: return (int) (byte) readByte();
+        case 0xd1: return (int) (short) readShort();
+        case 0xd2: return readInt();
+        case 0xd3: return integer(readLong());
+        case 0xd9: return readString(readByte());
+        case 0xda: return readString(readShort());
+        case 0xdb: return readString(readInt());
+        case 0xdc: return readArray(readShort());
+        case 0xdd: return readArray(readInt());
+        case 0xde: return readMap(readShort());
+        case 0xdf: return readMap(readInt());
+      }
+      throw new JSONException("Unsupported MessagePack type: 0x" + Integer.toHexString(type));
+    }
+
+    private JSONObject readMap(int size) throws JSONException {
+      // Every entry takes at least two bytes, a bogus size fails before looping over it.
+      ensure(size);
+      JSONObject result = new JSONObject();
+      for (int i = 0; i < size; ++i) {
+        Object key = readValue();
+        if (!(key instanceof String))
+          throw new JSONException("MessagePack map keys must be strings");
+        result.put((String) key, readValue());
+      }
+      return result;
+    }
+
+    private JSONArray readArray(int size) throws JSONException {
+      ensure(size);
+      JSONArray result = new JSONArray();
+      for (int i = 0; i < size; ++i)
+        result.put(readValue());
+      return result;
+    }
+
+    private static Object integer(long value) {
+      if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+        return (int) value;
+      return value;
+    }
+
+    /**
+     * Values above Long.MAX_VALUE become a Double, like JSON integers out of the long range.
+     */
+    private static Object unsigned(long value) {
+      if (value >= 0)
+        return integer(value);
+      return (double) (value >>> 1) * 2 + (value & 1);
+    }
+
+    private String readString(int length) throws JSONException {
+      ensure(length);
+      String result = new String(buffer, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return result;
+    }
+
+    private int readByte() throws JSONException {
+      ensure(1);
+      return buffer[position++] & 0xff;
+    }
+
+    private int readShort() throws JSONException {
+      return (readByte() << 8) | readByte();
+    }
+
+    private int readInt() throws JSONException {
+      return (readShort() << 16) | readShort();
+    }
+
+    private long readLong() throws JSONException {
+      return ((long) readInt() << 32) | (readInt() & 0xffffffffL);
+    }
+
+    private void ensure(int length) throws JSONException {
+      if (length < 0 || limit - position < length)
+        throw new JSONException("Truncated MessagePack message");
+    }
+  }
+}
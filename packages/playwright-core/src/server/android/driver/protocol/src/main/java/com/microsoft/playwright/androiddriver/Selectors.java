@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.regex.Pattern;
+
+/**
+ * Parses the selector JSON sent by the host. Building the actual selector
+ * is left to the subclass, each method narrows the selector built so far,
+ * or starts a new one when it is null.
+ *
+ * @param <S> selector type
+ */
+public abstract class Selectors<S> {
+  protected abstract S checkable(S selector, boolean value);
+  protected abstract S checked(S selector, boolean value);
+  protected abstract S clazz(S selector, Pattern value);
+  protected abstract S pkg(S selector, Pattern value);
+  protected abstract S desc(S selector, Pattern value);
+  protected abstract S text(S selector, Pattern value);
+  protected abstract S clickable(S selector, boolean value);
+  protected abstract S depth(S selector, int value);
+  protected abstract S enabled(S selector, boolean value);
+  protected abstract S focusable(S selector, boolean value);
+  protected abstract S focused(S selector, boolean value);
+  protected abstract S hasChild(S selector, S value);
+  protected abstract S hasDescendant(S selector, S value, int maxDepth);
+  protected abstract S longClickable(S selector, boolean value);
+  protected abstract S res(S selector, Pattern value);
+  protected abstract S scrollable(S selector, boolean value);
+  protected abstract S selected(S selector, boolean value);
+
+  /**
+   * Parses the "selector" property of the params, returns null for an empty selector.
+   */
+  public S parse(JSONObject param) throws JSONException {
+    JSONObject selector = param.getJSONObject("selector");
+    S result = null;
+    if (selector.has("checkable"))
+      result = checkable(result, selector.getBoolean("checkable"));
+    if (selector.has("checked"))
+      result = checked(result, selector.getBoolean("checked"));
+    if (selector.has("clazz"))
+      result = clazz(result, Pattern.compile(selector.getString("clazz")));
+    if (selector.has("pkg"))
+      result = pkg(result, Pattern.compile(selector.getString("pkg")));
+    if (selector.has("desc"))
+      result = desc(result, Pattern.compile(selector.getString("desc")));
+    if (selector.has("text"))
+      result = text(result, Pattern.compile(selector.getString("text")));
+    if (selector.has("clickable"))
+      result = clickable(result, selector.getBoolean("clickable"));
+    if (selector.has("depth"))
+      result = depth(result, selector.getInt("depth"));
+    if (selector.has("enabled"))
+      result = enabled(result, selector.getBoolean("enabled"));
+    if (selector.has("focusable"))
+      result = focusable(result, selector.getBoolean("focusable"));
+    if (selector.has("focused"))
+      result = focused(result, selector.getBoolean("focused"));
+    if (selector.has("hasChild"))
+      result = hasChild(result, parse(selector.getJSONObject("hasChild")));
+    if (selector.has("hasDescendant")) {
+      S value = parse(selector.getJSONObject("hasDescendant"));
+      int maxDepth = 10000;
+      if (selector.has("maxDepth"))
+        maxDepth = selector.getInt("maxDepth");
+      result = hasDescendant(result, value, maxDepth);
+    }
+    if (selector.has("longClickable"))
+      result = longClickable(result, selector.getBoolean("longClickable"));
+    if (selector.has("res"))
+      result = res(result, Pattern.compile(selector.getString("res")));
+    if (selector.has("scrollable"))
+      result = scrollable(result, selector.getBoolean("scrollable"));
+    if (selector.has("selected"))
+      result = selected(result, selector.getBoolean("selected"));
+    return result;
+  }
+}
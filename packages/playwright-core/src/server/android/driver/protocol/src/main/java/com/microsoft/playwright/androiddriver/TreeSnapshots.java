@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the last accessibility tree sent to the host so that the next one
+ * can be sent as a delta.
+ *
+ * Nodes are flattened into records with a stable id, the parent id and the ids
+ * of the children. The id is derived from the node's hash code, which Android
+ * computes from the source view id and the window id, so a view keeps its id
+ * across hierarchy fetches.
+ *
+ * @param <N> node type
+ */
+public class TreeSnapshots<N> {
+  // Some changes don't produce accessibility events, a snapshot older than
+  // this is walked again even if the generation didn't move.
+  static final long MAX_UNCHANGED_AGE_NANOS = 1_000_000_000L;
+
+  private final A11yNodes<N> a11yNodes;
+  private final A11yTreeSerializer<N> serializer;
+  private int version;
+  private long generation = -1;
+  private long committedAt;
+  private long unchanged;
+  private Object rootId = JSONObject.NULL;
+  private Map<String, String> fingerprints = new LinkedHashMap<>();
+
+  public TreeSnapshots(A11yNodes<N> nodes) {
+    a11yNodes = nodes;
+    serializer = new A11yTreeSerializer<>(nodes);
+  }
+
+  /**
+   * @param generation accessibility event generation the root was fetched in,
+   *     a later delta in the same generation is answered without a walk for
+   *     up to {@link #MAX_UNCHANGED_AGE_NANOS}.
+   */
+  public synchronized JSONObject snapshot(N root, long generation) throws JSONException {
+    Map<String, JSONObject> nodes = collect(root);
+    JSONObject result = new JSONObject();
+    result.put("version", commit(nodes, fingerprint(nodes), generation));
+    result.put("full", true);
+    result.put("root", rootId);
+    result.put("nodes", new JSONArray(nodes.values()));
+    return result;
+  }
+
+  public synchronized JSONObject delta(N root, long generation, int since) throws JSONException {
+    if (since != version || version == 0)
+      return snapshot(root, generation);
+    if (generation == this.generation && System.nanoTime() - committedAt < MAX_UNCHANGED_AGE_NANOS) {
+      ++unchanged;
+      return emptyDelta(since);
+    }
+
+    Map<String, JSONObject> nodes = collect(root);
+    Map<String, String> next = fingerprint(nodes);
+    JSONArray added = new JSONArray();
+    JSONArray changed = new JSONArray();
+    JSONArray removed = new JSONArray();
+    for (Map.Entry<String, String> entry : next.entrySet()) {
+      String previous = fingerprints.get(entry.getKey());
+      if (previous == null)
+        added.put(nodes.get(entry.getKey()));
+      else if (!previous.equals(entry.getValue()))
+        changed.put(nodes.get(entry.getKey()));
+    }
+    for (String id : fingerprints.keySet()) {
+      if (!nodes.containsKey(id))
+        removed.put(id);
+    }
+
+    JSONObject result = new JSONObject();
+    result.put("base", since);
+    result.put("version", commit(nodes, next, generation));
+    result.put("full", false);
+    result.put("root", rootId);
+    result.put("added", added);
+    result.put("changed", changed);
+    result.put("removed", removed);
+    return result;
+  }
+
+  public synchronized JSONObject stats() throws JSONException {
+    JSONObject result = new JSONObject();
+    result.put("version", version);
+    result.put("nodes", fingerprints.size());
+    result.put("unchanged", unchanged);
+    return result;
+  }
+
+  private JSONObject emptyDelta(int since) throws JSONException {
+    JSONObject result = new JSONObject();
+    result.put("base", since);
+    result.put("version", version);
+    result.put("full", false);
+    result.put("root", rootId);
+    result.put("added", new JSONArray());
+    result.put("changed", new JSONArray());
+    result.put("removed", new JSONArray());
+    return result;
+  }
+
+  private int commit(Map<String, JSONObject> nodes, Map<String, String> next, long generation) {
+    rootId = nodes.isEmpty() ? JSONObject.NULL : nodes.keySet().iterator().next();
+    fingerprints = next;
+    this.generation = generation;
+    committedAt = System.nanoTime();
+    return ++version;
+  }
+
+  private static Map<String, String> fingerprint(Map<String, JSONObject> nodes) {
+    Map<String, String> result = new LinkedHashMap<>(nodes.size());
+    for (Map.Entry<String, JSONObject> entry : nodes.entrySet())
+      result.put(entry.getKey(), entry.getValue().toString());
+    return result;
+  }
+
+  private Map<String, JSONObject> collect(N root) throws JSONException {
+    Map<String, JSONObject> nodes = new LinkedHashMap<>();
+    if (root != null)
+      collect(root, null, nodes);
+    return nodes;
+  }
+
+  private String collect(N node, String parentId, Map<String, JSONObject> nodes) throws JSONException {
+    String id = Integer.toHexString(node.hashCode());
+    // Hash codes may collide, keep ids unique within a snapshot.
+    for (int i = 1; nodes.containsKey(id); ++i)
+      id = Integer.toHexString(node.hashCode()) + "-" + i;
+
+    JSONObject record = serializer.info(node);
+    record.put("id", id);
+    record.put("parent", parentId == null ? JSONObject.NULL : parentId);
+    nodes.put(id, record);
+
+    JSONArray children = new JSONArray();
+    for (int i = 0; i < a11yNodes.getChildCount(node); ++i) {
+      N child = a11yNodes.getChild(node, i);
+      if (child == null)
+        continue;
+      try {
+        children.put(collect(child, id, nodes));
+      } finally {
+        a11yNodes.recycle(child);
+      }
+    }
+    record.put("children", children);
+    return id;
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import java.io.IOException;
+
+/**
+ * Streaming writer shared by the JSON and MessagePack encodings. Container
+ * sizes must be known upfront since MessagePack prefixes maps and arrays
+ * with their length, the JSON encoding ignores them.
+ */
+public interface ValueWriter {
+  ValueWriter beginObject(int size) throws IOException;
+  ValueWriter endObject() throws IOException;
+  ValueWriter beginArray(int size) throws IOException;
+  ValueWriter endArray() throws IOException;
+  ValueWriter name(String name) throws IOException;
+  ValueWriter value(String value) throws IOException;
+  ValueWriter value(long value) throws IOException;
+  ValueWriter value(double value) throws IOException;
+  ValueWriter value(boolean value) throws IOException;
+  ValueWriter nullValue() throws IOException;
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static com.microsoft.playwright.androiddriver.JsonAssert.assertJsonEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FrameCodecTest {
+  private static JSONObject largeMessage() throws JSONException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 2000; ++i)
+      text.append("item ").append(i).append(' ');
+    return new JSONObject().put("id", 1).put("result", new JSONObject().put("text", text.toString()));
+  }
+
+  /**
+   * Reads a frame the way the host does, inflating it when the length has the compressed flag.
+   */
+  private static byte[] readFrame(DataInputStream in) throws IOException, DataFormatException {
+    int length = in.readInt();
+    byte[] payload = new byte[length & ~(FrameCodec.COMPRESSED_FLAG | FrameCodec.CONTINUED_FLAG)];
+    in.readFully(payload);
+    if ((length & FrameCodec.COMPRESSED_FLAG) == 0)
+      return payload;
+    Inflater inflater = new Inflater();
+    inflater.setInput(payload);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] chunk = new byte[4096];
+    while (!inflater.finished())
+      out.write(chunk, 0, inflater.inflate(chunk));
+    inflater.end();
+    return out.toByteArray();
+  }
+
+  private static byte[] send(FrameCodec codec, JSONObject message) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FrameCodec.FrameBuffer frame = codec.encode(message);
+    FrameCodec.writeFrame(new DataOutputStream(out), frame, codec.deflate(frame));
+    return out.toByteArray();
+  }
+
+  private static JSONObject receive(FrameCodec codec, byte[] wire) throws IOException, DataFormatException, JSONException {
+    byte[] payload = readFrame(new DataInputStream(new ByteArrayInputStream(wire)));
+    return codec.decode(payload, payload.length);
+  }
+
+  @Test
+  public void setsTheCompressedFlagOnDeflatedFrames() throws Exception {
+    for (boolean msgpack : new boolean[] { false, true }) {
+      FrameCodec codec = new FrameCodec();
+      codec.setMsgpack(msgpack);
+      codec.setCompressionThreshold(1024);
+      JSONObject message = largeMessage();
+      byte[] wire = send(codec, message);
+      int length = new DataInputStream(new ByteArrayInputStream(wire)).readInt();
+      assertEquals(FrameCodec.COMPRESSED_FLAG, length & FrameCodec.COMPRESSED_FLAG);
+      assertEquals(wire.length - 4, length & ~FrameCodec.COMPRESSED_FLAG);
+      assertJsonEquals(message, receive(codec, wire));
+    }
+  }
+
+  @Test
+  public void leavesSmallAndUncompressedFramesAlone() throws Exception {
+    FrameCodec codec = new FrameCodec();
+    JSONObject message = largeMessage();
+    byte[] wire = send(codec, message);
+    assertEquals(wire.length - 4, new DataInputStream(new ByteArrayInputStream(wire)).readInt());
+    assertJsonEquals(message, receive(codec, wire));
+
+    codec.setCompressionThreshold(1 << 20);
+    assertNull(codec.deflate(codec.encode(message)));
+    codec.setCompressionThreshold(1);
+    JSONObject small = new JSONObject().put("id", 1);
+    // Deflating a tiny frame makes it bigger, it is sent as is.
+    assertNull(codec.deflate(codec.encode(small)));
+    wire = send(codec, small);
+    assertEquals(wire.length - 4, new DataInputStream(new ByteArrayInputStream(wire)).readInt());
+  }
+
+  @Test
+  public void trimsOversizedBuffersAfterWriting() throws Exception {
+    FrameCodec codec = new FrameCodec();
+    codec.setCompressionThreshold(1024);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < FrameCodec.MAX_RETAINED_BUFFER_SIZE; ++i)
+      text.append((char) ('a' + i * 7 % 26));
+    JSONObject message = new JSONObject().put("text", text.toString());
+    FrameCodec.FrameBuffer frame = codec.encode(message);
+    FrameCodec.FrameBuffer compressed = codec.deflate(frame);
+    assertTrue(frame.array().length > FrameCodec.MAX_RETAINED_BUFFER_SIZE);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FrameCodec.writeFrame(new DataOutputStream(out), frame, compressed);
+    assertTrue(frame.array().length <= FrameCodec.MAX_RETAINED_BUFFER_SIZE);
+    assertEquals(0, frame.size());
+    assertJsonEquals(message, receive(codec, out.toByteArray()));
+  }
+
+  @Test
+  public void sendsLargeStreamedResultsInChunks() throws Exception {
+    for (boolean msgpack : new boolean[] { false, true }) {
+      FrameCodec codec = new FrameCodec();
+      codec.setMsgpack(msgpack);
+      codec.setCompressionThreshold(1024);
+      codec.setChunkSize(16 * 1024);
+      JSONObject items = new JSONObject();
+      for (int i = 0; i < 5000; ++i)
+        items.put("item" + i, new JSONObject().put("text", "item " + i));
+      JSONObject message = new JSONObject().put("id", 1).put("result", (StreamingResult) writer -> FrameCodec.writeValue(writer, items));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(out);
+      int[] chunks = new int[1];
+      FrameCodec.FrameBuffer last = codec.encode(message, chunk -> {
+        // The JSON writer hands over its scratch buffer in up to 8 KiB pieces.
+        assertTrue(chunk.size() < 16 * 1024 + 8 * 1024 + 64);
+        ++chunks[0];
+        FrameCodec.writeFrame(dos, chunk, codec.deflate(chunk), true);
+      });
+      FrameCodec.writeFrame(dos, last, codec.deflate(last));
+      assertTrue(chunks[0] > 2);
+
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+      ByteArrayOutputStream payload = new ByteArrayOutputStream();
+      int frames = 0;
+      boolean continued = true;
+      while (continued) {
+        in.mark(4);
+        continued = (in.readInt() & FrameCodec.CONTINUED_FLAG) != 0;
+        in.reset();
+        payload.write(readFrame(in));
+        ++frames;
+      }
+      assertEquals(chunks[0] + 1, frames);
+      assertEquals(0, in.available());
+      JSONObject received = codec.decode(payload.toByteArray(), payload.size());
+      assertJsonEquals(items, received.getJSONObject("result"));
+    }
+  }
+
+  @Test
+  public void keepsStreamedResultsInOneFrameWithoutAChunkSize() throws Exception {
+    FrameCodec codec = new FrameCodec();
+    String text = largeMessage().toString();
+    JSONObject message = new JSONObject().put("id", 1).put("result", (StreamingResult) writer -> writer.beginArray(1).value(text).endArray());
+    FrameCodec.FrameBuffer frame = codec.encode(message, chunk -> {
+      throw new AssertionError("Unexpected chunk");
+    });
+    assertTrue(frame.size() > 16 * 1024);
+  }
+
+  @Test
+  public void decodesOnlyObjects() throws JSONException {
+    FrameCodec codec = new FrameCodec();
+    byte[] array = "[1]".getBytes();
+    assertNull(codec.decode(array, array.length));
+    byte[] object = Arrays.copyOf("{\"id\":1}xxxx".getBytes(), 12);
+    assertEquals(1, codec.decode(object, 8).getInt("id"));
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Android's org.json has no JSONObject.similar(), values are compared here
+ * regardless of key order and of the boxed type numbers were decoded into.
+ */
+class JsonAssert {
+  static void assertJsonEquals(Object expected, Object actual) throws JSONException {
+    assertEquals(canonical(expected), canonical(actual));
+  }
+
+  private static Object canonical(Object value) throws JSONException {
+    if (value instanceof JSONObject) {
+      JSONObject object = (JSONObject) value;
+      Map<String, Object> result = new TreeMap<>();
+      for (Iterator<?> keys = object.keys(); keys.hasNext(); ) {
+        String key = (String) keys.next();
+        result.put(key, canonical(object.get(key)));
+      }
+      return result;
+    }
+    if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      List<Object> result = new ArrayList<>();
+      for (int i = 0; i < array.length(); ++i)
+        result.add(canonical(array.get(i)));
+      return result;
+    }
+    if (value instanceof Double || value instanceof Float)
+      return ((Number) value).doubleValue();
+    if (value instanceof Number)
+      return ((Number) value).longValue();
+    return value;
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static com.microsoft.playwright.androiddriver.JsonAssert.assertJsonEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonValueReaderTest {
+  private static Object read(String json) throws JSONException {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    // The bytes just outside the range make the input malformed if the reader strays past it.
+    byte[] framed = new byte[bytes.length + 4];
+    System.arraycopy(bytes, 0, framed, 2, bytes.length);
+    framed[0] = '[';
+    framed[framed.length - 1] = ']';
+    return new JsonValueReader().reset(framed, 2, bytes.length).read();
+  }
+
+  private static void assertMalformed(String json) {
+    try {
+      read(json);
+      fail("Expected a JSONException for " + json);
+    } catch (JSONException expected) {
+    }
+  }
+
+  private static JSONObject roundTrip(JSONObject message) throws IOException, JSONException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JsonValueWriter writer = new JsonValueWriter(out);
+    FrameCodec.writeValue(writer, message);
+    writer.flush();
+    byte[] bytes = out.toByteArray();
+    return (JSONObject) new JsonValueReader().reset(bytes, 0, bytes.length).read();
+  }
+
+  @Test
+  public void readsStructures() throws JSONException {
+    JSONObject object = (JSONObject) read(" {\"a\": [1, true, false, null, {}, []], \"b\" : {\"c\":\"d\"}}\n");
+    JSONArray a = object.getJSONArray("a");
+    assertEquals(6, a.length());
+    assertEquals(1, a.get(0));
+    assertEquals(Boolean.TRUE, a.get(1));
+    assertEquals(Boolean.FALSE, a.get(2));
+    assertSame(JSONObject.NULL, a.get(3));
+    assertEquals(0, a.getJSONObject(4).length());
+    assertEquals(0, a.getJSONArray(5).length());
+    assertEquals("d", object.getJSONObject("b").getString("c"));
+  }
+
+  @Test
+  public void typesNumbersLikeJSONTokener() throws JSONException {
+    assertEquals(0, read("0"));
+    assertEquals(-42, read("-42"));
+    assertEquals(Integer.MAX_VALUE, read("2147483647"));
+    assertEquals(Integer.MIN_VALUE, read("-2147483648"));
+    assertEquals(2147483648L, read("2147483648"));
+    assertEquals(-2147483649L, read("-2147483649"));
+    assertEquals(Long.MAX_VALUE, read("9223372036854775807"));
+    assertEquals(Long.MIN_VALUE, read("-9223372036854775808"));
+    assertEquals(9223372036854775808.0, read("9223372036854775808"));
+    assertEquals(1.5, read("1.5"));
+    assertEquals(-1000.0, read("-1e3"));
+    assertEquals(0.025, read("2.5E-2"));
+  }
+
+  @Test
+  public void decodesEscapes() throws JSONException {
+    assertEquals("\"\\/\b\f\n\r\t", read("\"\\\"\\\\\\/\\b\\f\\n\\r\\t\""));
+    assertEquals("\u00e9\u2014", read("\"\\u00e9\\u2014\""));
+    assertEquals("A\u00e9", read("\"\\u0041\\u00E9\""));
+  }
+
+  @Test
+  public void decodesSurrogatePairs() throws JSONException {
+    String emoji = new String(Character.toChars(0x1f600));
+    // Raw 4-byte UTF-8 and an escaped pair decode to the same string.
+    assertEquals("x" + emoji + "y", read("\"x" + emoji + "y\""));
+    assertEquals(emoji, read("\"\\ud83d\\ude00\""));
+    assertEquals(emoji + emoji + "\u00e9\u20ac", read("\"" + emoji + emoji + "\u00e9\u20ac\""));
+  }
+
+  @Test
+  public void readsLongStrings() throws JSONException {
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 1000; ++i)
+      expected.append(new String(Character.toChars(0x1f600))).append(i).append('\u00e9');
+    assertEquals(expected.toString(), read("\"" + expected + "\""));
+  }
+
+  @Test
+  public void rejectsTrailingData() {
+    assertMalformed("{} {}");
+    assertMalformed("1 2");
+    assertMalformed("truex");
+    assertMalformed("\"a\",");
+  }
+
+  @Test
+  public void rejectsBadEscapes() {
+    assertMalformed("\"\\x\"");
+    assertMalformed("\"\\u12\"");
+    assertMalformed("\"\\u12G4\"");
+    assertMalformed("\"\\");
+    assertMalformed("\"\\u00");
+  }
+
+  @Test
+  public void rejectsMalformedInput() {
+    assertMalformed("");
+    assertMalformed("   ");
+    assertMalformed("{");
+    assertMalformed("{\"a\"}");
+    assertMalformed("{\"a\":1,}");
+    assertMalformed("{a:1}");
+    assertMalformed("[1,");
+    assertMalformed("[1 2]");
+    assertMalformed("\"unterminated");
+    assertMalformed("nul");
+    assertMalformed("-");
+    assertMalformed("1-2");
+    assertMalformed("1.2.3");
+  }
+
+  @Test
+  public void rejectsMalformedUtf8() {
+    byte[][] inputs = {
+        { '"', (byte) 0xc3, '"' },
+        { '"', (byte) 0xe2, (byte) 0x82, '"' },
+        { '"', (byte) 0xf0, (byte) 0x9f, (byte) 0x98 },
+    };
+    for (byte[] input : inputs) {
+      try {
+        new JsonValueReader().reset(input, 0, input.length).read();
+        fail("Expected a JSONException");
+      } catch (JSONException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void roundTripsThroughTheWriter() throws IOException, JSONException {
+    JSONObject message = new JSONObject();
+    message.put("id", 7);
+    message.put("long", 1L << 40);
+    message.put("double", 0.1);
+    message.put("negative", -3);
+    message.put("text", "quote \" backslash \\ control \u0001 tab \t " + new String(Character.toChars(0x1f600)));
+    message.put("empty", "");
+    message.put("null", JSONObject.NULL);
+    message.put("flag", true);
+    message.put("array", new JSONArray().put(1).put("two").put(new JSONObject().put("three", 3.5)));
+    JSONObject decoded = roundTrip(message);
+    assertEquals(message.length(), decoded.length());
+    assertEquals(7, decoded.get("id"));
+    assertEquals(1L << 40, decoded.get("long"));
+    assertEquals(0.1, decoded.get("double"));
+    assertEquals(-3, decoded.get("negative"));
+    assertEquals(message.getString("text"), decoded.getString("text"));
+    assertEquals("", decoded.getString("empty"));
+    assertSame(JSONObject.NULL, decoded.get("null"));
+    assertEquals(Boolean.TRUE, decoded.get("flag"));
+    assertJsonEquals(message.getJSONArray("array"), decoded.getJSONArray("array"));
+  }
+
+  @Test
+  public void readerIsReusable() throws JSONException {
+    JsonValueReader reader = new JsonValueReader();
+    byte[] first = "{\"a\":\"first value that is long enough\"}".getBytes(StandardCharsets.UTF_8);
+    byte[] second = "[\"b\"]".getBytes(StandardCharsets.UTF_8);
+    assertEquals("first value that is long enough", ((JSONObject) reader.reset(first, 0, first.length).read()).getString("a"));
+    assertEquals("b", ((JSONArray) reader.reset(second, 0, second.length).read()).getString(0));
+  }
+}
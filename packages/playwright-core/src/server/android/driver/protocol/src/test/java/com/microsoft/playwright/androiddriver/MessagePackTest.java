@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) Microsoft Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.microsoft.playwright.androiddriver;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static com.microsoft.playwright.androiddriver.JsonAssert.assertJsonEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MessagePackTest {
+  private static Object read(int... bytes) throws JSONException {
+    byte[] buffer = new byte[bytes.length + 2];
+    for (int i = 0; i < bytes.length; ++i)
+      buffer[i + 1] = (byte) bytes[i];
+    // 0xc1 is never used by MessagePack, reading a byte outside the range fails.
+    buffer[0] = (byte) 0xc1;
+    buffer[buffer.length - 1] = (byte) 0xc1;
+    return new MessagePack.Reader(buffer, 1, bytes.length).read();
+  }
+
+  private static void assertMalformed(int... bytes) {
+    try {
+      read(bytes);
+      fail("Expected a JSONException for " + Arrays.toString(bytes));
+    } catch (JSONException expected) {
+    }
+  }
+
+  private static byte[] write(Object value) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FrameCodec.writeValue(new MessagePack.Writer(out), value);
+    return out.toByteArray();
+  }
+
+  private static Object roundTrip(Object value) throws IOException, JSONException {
+    byte[] bytes = write(value);
+    return new MessagePack.Reader(bytes, 0, bytes.length).read();
+  }
+
+  @Test
+  public void typesIntegersLikeTheJsonReader() throws IOException, JSONException {
+    long[] values = {
+        0, 1, 127, 128, 255, 256, 65535, 65536, -1, -32, -33, -128, -129, -32768, -32769,
+        Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE + 1L, Integer.MIN_VALUE - 1L,
+        Long.MAX_VALUE, Long.MIN_VALUE };
+    for (long value : values) {
+      byte[] json = Long.toString(value).getBytes("UTF-8");
+      Object expected = new JsonValueReader().reset(json, 0, json.length).read();
+      Object actual = roundTrip(value);
+      assertEquals("Type of " + value, expected.getClass(), actual.getClass());
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void readsEveryIntegerFormat() throws JSONException {
+    assertEquals(5, read(0x05));
+    assertEquals(-3, read(0xfd));
+    assertEquals(200, read(0xcc, 0xc8));
+    assertEquals(40000, read(0xcd, 0x9c, 0x40));
+    assertEquals(7, read(0xce, 0, 0, 0, 7));
+    assertEquals(4000000000L, read(0xce, 0xee, 0x6b, 0x28, 0x00));
+    assertEquals(-100, read(0xd0, 0x9c));
+    assertEquals(-30000, read(0xd1, 0x8a, 0xd0));
+    assertEquals(-2000000000, read(0xd2, 0x88, 0xca, 0x6c, 0x00));
+    assertEquals(-1, read(0xd3, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff));
+    assertEquals(1L << 40, read(0xd3, 0, 0, 1, 0, 0, 0, 0, 0));
+  }
+
+  @Test
+  public void readsUint64() throws JSONException {
+    assertEquals(9, read(0xcf, 0, 0, 0, 0, 0, 0, 0, 9));
+    assertEquals(1L << 40, read(0xcf, 0, 0, 1, 0, 0, 0, 0, 0));
+    assertEquals(Long.MAX_VALUE, read(0xcf, 0x7f, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff));
+    // Above Long.MAX_VALUE, typed like a JSON integer out of the long range.
+    assertEquals(9223372036854775808.0, read(0xcf, 0x80, 0, 0, 0, 0, 0, 0, 0));
+    assertEquals(18446744073709551615.0, read(0xcf, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff));
+  }
+
+  @Test
+  public void readsFloats() throws IOException, JSONException {
+    assertEquals(1.5, read(0xca, 0x3f, 0xc0, 0, 0));
+    assertEquals(0.1, roundTrip(0.1));
+    assertEquals(-0.0, roundTrip(-0.0));
+    assertEquals(Double.MAX_VALUE, roundTrip(Double.MAX_VALUE));
+  }
+
+  @Test
+  public void roundTripsStringsOfEveryLength() throws IOException, JSONException {
+    String emoji = new String(Character.toChars(0x1f600));
+    int[] lengths = { 0, 1, 31, 32, 255, 256, 65535, 65536 };
+    for (int length : lengths) {
+      StringBuilder value = new StringBuilder();
+      while (value.length() < length)
+        value.append('a');
+      assertEquals(value.toString(), roundTrip(value.toString()));
+    }
+    assertEquals("\u00e9" + emoji + "\u20ac", roundTrip("\u00e9" + emoji + "\u20ac"));
+    assertArrayEquals(new byte[] { (byte) 0xa4, (byte) 0xf0, (byte) 0x9f, (byte) 0x98, (byte) 0x80 }, write(emoji));
+  }
+
+  @Test
+  public void roundTripsContainersOfEveryLength() throws IOException, JSONException {
+    int[] sizes = { 0, 15, 16, 65535, 65536 };
+    for (int size : sizes) {
+      JSONArray array = new JSONArray();
+      JSONObject object = new JSONObject();
+      for (int i = 0; i < size; ++i) {
+        array.put(i);
+        object.put("k" + i, i);
+      }
+      JSONArray decodedArray = (JSONArray) roundTrip(array);
+      assertEquals(size, decodedArray.length());
+      if (size > 0)
+        assertEquals(size - 1, decodedArray.get(size - 1));
+      JSONObject decodedObject = (JSONObject) roundTrip(object);
+      assertEquals(size, decodedObject.length());
+      if (size > 0)
+        assertEquals(size - 1, decodedObject.get("k" + (size - 1)));
+    }
+  }
+
+  @Test
+  public void roundTripsMessages() throws IOException, JSONException {
+    JSONObject message = new JSONObject();
+    message.put("id", 3);
+    message.put("method", "click");
+    message.put("params", new JSONObject().put("selector", new JSONObject().put("text", "OK")).put("timeout", 5000L));
+    message.put("flags", new JSONArray().put(true).put(false).put(JSONObject.NULL));
+    JSONObject decoded = (JSONObject) roundTrip(message);
+    assertJsonEquals(message, decoded);
+    assertSame(JSONObject.NULL, decoded.getJSONArray("flags").get(2));
+  }
+
+  @Test
+  public void rejectsTruncatedInput() throws IOException, JSONException {
+    assertMalformed();
+    assertMalformed(0xcc);
+    assertMalformed(0xcd, 0x01);
+    assertMalformed(0xce, 0, 0, 0);
+    assertMalformed(0xcf, 0, 0, 0, 0, 0, 0, 0);
+    assertMalformed(0xcb, 0x3f, 0xf0);
+    assertMalformed(0xa3, 'a', 'b');
+    assertMalformed(0xd9, 0x05, 'a');
+    assertMalformed(0x92, 0x01);
+    assertMalformed(0x81, 0xa1, 'a');
+    byte[] message = write(new JSONObject().put("method", "tree").put("params", new JSONObject().put("a", 1)));
+    for (int length = 0; length < message.length; ++length) {
+      try {
+        new MessagePack.Reader(message, 0, length).read();
+        fail("Expected a JSONException for a message truncated to " + length + " bytes");
+      } catch (JSONException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void rejectsTrailingData() {
+    assertMalformed(0x01, 0x02);
+    assertMalformed(0x80, 0xc0);
+    assertMalformed(0xa1, 'a', 'b');
+  }
+
+  @Test
+  public void rejectsUnsupportedInput() {
+    // Reserved, bin and ext types are outside the JSON data model.
+    assertMalformed(0xc1);
+    assertMalformed(0xc4, 0x01, 0x00);
+    assertMalformed(0xd4, 0x01, 0x00);
+    // Map keys have to be strings.
+    assertMalformed(0x81, 0x01, 0x02);
+    // A negative 32-bit length.
+    assertMalformed(0xdb, 0xff, 0xff, 0xff, 0xff);
+    assertMalformed(0xdd, 0x80, 0, 0, 0);
+  }
+}
@@ -45,7 +45,9 @@ function getAllMarkdownFiles(dirPath, filePaths = []) {
 
 const run = async () => {
   const jsOnly = process.argv.includes('--js-only');
-  const lintingServiceFactory = new LintingServiceFactory(jsOnly);
+  // Prints the slowest Java snippets with their parse time and allocations.
+  const javaReport = process.argv.includes('--java-report');
+  const lintingServiceFactory = new LintingServiceFactory(jsOnly, javaReport);
   const documentationRoot = path.join(PROJECT_DIR, 'docs', 'src');
   let documentation = parseApi(path.join(documentationRoot, 'api'));
 
@@ -70,6 +72,7 @@ const run = async () => {
     });
   }
   await lintingServiceFactory.lintAndReport(codeSnippets);
+  lintingServiceFactory.dispose();
   if (jsOnly)
     return;
   const { hasErrors } = lintingServiceFactory.reportMetrics();
@@ -121,12 +124,19 @@ class LintingService {
   }
 
   /**
+   * Services that know results before the whole batch is done may hand them
+   * to onResult as they come, in snippet order. The returned results are
+   * complete either way.
    * @param {CodeSnippet[]} snippets
+   * @param {(result: LintResult) => void} [onResult]
    * @returns {Promise<LintResult[]>}
    */
-  async lint(snippets) {
+  async lint(snippets, onResult) {
     throw new Error('lint() is not implemented');
   }
+
+  dispose() {
+  }
 }
 
 
@@ -241,17 +251,108 @@ class CSharpLintingService extends LintingService {
 }
 
 class JavaLintingService extends LintingService {
+  /** @type {import('child_process').ChildProcessWithoutNullStreams | undefined} */
+  _server;
+  /** @type {{ count: number, results: LintResult[], onResult?: (result: LintResult) => void, fulfill: (results: LintResult[]) => void, reject: (error: Error) => void }[]} */
+  _pending = [];
+
+  /**
+   * @param {boolean} report
+   */
+  constructor(report) {
+    super();
+    this._report = report;
+  }
+
   supports(codeLang) {
     return codeLang === 'java';
   }
 
-  async lint(snippets) {
-    return await this.spawnAsync('java', ['-jar', path.join(__dirname, 'java', 'target', 'java-syntax-checker-1.0-SNAPSHOT.jar')], snippets, path.join(__dirname, 'java'))
+  /**
+   * The checker runs in server mode and stays alive until dispose(), so
+   * repeated lint() calls share one JVM and its warm parsers. A doclint run
+   * lints all Java snippets in a single call, which gets no such benefit.
+   */
+  _ensureServer() {
+    if (this._server)
+      return this._server;
+    const target = path.join(__dirname, 'java', 'target');
+    // Results of unchanged snippets are reused across runs, "mvn clean" drops them with the jar.
+    const args = ['-jar', path.join(target, 'java-syntax-checker-1.0-SNAPSHOT.jar'), '--server', `--cache=${path.join(target, 'snippet-cache', 'results.bin')}`];
+    if (this._report)
+      args.push('--report');
+    const server = child_process.spawn('java', args, { cwd: path.join(__dirname, 'java') });
+    server.stderr.pipe(process.stderr);
+    server.stdout.setEncoding('utf8');
+    let buffer = '';
+    server.stdout.on('data', data => {
+      buffer += data;
+      for (let newline = buffer.indexOf('\n'); newline !== -1; newline = buffer.indexOf('\n')) {
+        const line = buffer.substring(0, newline);
+        buffer = buffer.substring(newline + 1);
+        let response;
+        try {
+          response = JSON.parse(line);
+        } catch (e) {
+          // Something other than the checker wrote to stdout, later lines can't be matched to requests.
+          onClose(new Error(`Unexpected output from the Java checker: ${line}`));
+          server.kill();
+          return;
+        }
+        // Every snippet gets a line with its result, a batch that can't be read gets a single error line.
+        const pending = this._pending[0];
+        if (!pending)
+          continue;
+        if (!('status' in response)) {
+          this._pending.shift();
+          pending.reject(new Error(response.error));
+          continue;
+        }
+        pending.results.push(response);
+        pending.onResult?.(response);
+        if (pending.results.length === pending.count) {
+          this._pending.shift();
+          pending.fulfill(pending.results);
+        }
+      }
+    });
+    const onClose = error => {
+      if (this._server === server)
+        this._server = undefined;
+      for (const pending of this._pending.splice(0))
+        pending.reject(error);
+    };
+    server.on('error', onClose);
+    // Writing to a checker that failed to start or exited raises EPIPE here.
+    server.stdin.on('error', onClose);
+    server.on('exit', code => onClose(new Error(`java exited with code ${code}`)));
+    this._server = server;
+    return server;
+  }
+
+  async lint(snippets, onResult) {
+    // The server doesn't answer an empty batch.
+    if (!snippets.length)
+      return [];
+    const server = this._ensureServer();
+    return await new Promise((fulfill, reject) => {
+      this._pending.push({ count: snippets.length, results: [], onResult, fulfill, reject });
+      server.stdin.write(JSON.stringify(snippets) + '\n');
+    });
+  }
+
+  dispose() {
+    this._server?.stdin.end();
+    this._server = undefined;
   }
 }
 
 class LintingServiceFactory {
-  constructor(jsOnly) {
+  /**
+   * @param {boolean} jsOnly
+   * @param {boolean} javaReport
+   */
+  constructor(jsOnly, javaReport) {
     /** @type {LintingService[]} */
     this.services = [
       new JSLintingService(),
@@ -260,7 +361,7 @@ class LintingServiceFactory {
       this.services.push(
         new PythonLintingService(),
         new CSharpLintingService(),
-        new JavaLintingService(),
+        new JavaLintingService(javaReport),
       );
     }
     this._metrics = {};
@@ -287,29 +388,43 @@ class LintingServiceFactory {
         continue;
       }
       const languageSnippets = groupedByLanguage[language];
-      const results = await service.lint(languageSnippets);
+      let reported = 0;
+      const report = result => this._reportResult(languageSnippets[reported++], result);
+      const results = await service.lint(languageSnippets, report);
       if (results.length !== languageSnippets.length)
         throw new Error('Linting service returned wrong number of results');
+      // Services that don't report as they go.
+      for (const result of results.slice(reported))
+        report(result);
+    }
+  }
 
-      for (const [{ code, codeLang, filePath }, result] of /** @type {[[CodeSnippet, LintResult]]} */ (results.map((result, index) => [languageSnippets[index], result]))) {
-        const { status, error } = result;
-        this._collectMetrics(codeLang, result);
-        if (status === 'error') {
-          console.log(`${codeLang} linting error!`);
-          console.log(`ERROR: ${error}`);
-          console.log(`File: ${filePath}`);
-          console.log(code);
-          console.log('-'.repeat(80));
-          if (process.env.GITHUB_ACTION)
-            actions.warning(`Error: ${error}\nUnable to lint:\n${code}`, {
-              title: `${codeLang} linting error`,
-              file: filePath,
-            });
-        }
-      }
+  /**
+   * @param {CodeSnippet} snippet
+   * @param {LintResult} result
+   */
+  _reportResult({ code, codeLang, filePath }, result) {
+    const { status, error } = result;
+    this._collectMetrics(codeLang, result);
+    if (status === 'error') {
+      console.log(`${codeLang} linting error!`);
+      console.log(`ERROR: ${error}`);
+      console.log(`File: ${filePath}`);
+      console.log(code);
+      console.log('-'.repeat(80));
+      if (process.env.GITHUB_ACTION)
+        actions.warning(`Error: ${error}\nUnable to lint:\n${code}`, {
+          title: `${codeLang} linting error`,
+          file: filePath,
+        });
     }
   }
 
+  dispose() {
+    for (const service of this.services)
+      service.dispose();
+  }
+
   /**
    * @returns {{ hasErrors: boolean }}
    */
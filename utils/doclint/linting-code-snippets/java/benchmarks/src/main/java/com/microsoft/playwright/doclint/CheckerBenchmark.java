@@ -0,0 +1,114 @@
+package com.microsoft.playwright.doclint;
+
+import com.github.javaparser.JavaParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Splits the cost of checking the whole corpus into its stages: the regex
+ * work of cleanSnippet, creating a parser and parsing the cleaned code.
+ * checkCorpus runs the checker end to end for comparison.
+ *
+ * The default corpus is docs/src, relative to this module. Use -p corpus=...
+ * for another directory or a JSON file in the checker input format, and
+ * -prof gc for the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckerBenchmark {
+    @Param("../../../../../docs/src")
+    public String corpus;
+
+    private List<CodeSnippet> snippets;
+    private List<String> cleanedCode;
+
+    @Setup
+    public void setup() throws IOException {
+        snippets = SnippetCorpus.load(Path.of(corpus));
+        cleanedCode = snippets.stream().map(snippet -> JavaSyntaxChecker.cleanSnippet(snippet.code)).collect(Collectors.toList());
+    }
+
+    @State(Scope.Thread)
+    public static class ParserState {
+        JavaParser parser;
+
+        @Setup
+        public void setup() {
+            parser = JavaSyntaxChecker.newParser();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CheckerState {
+        @Param("1")
+        public int threads;
+
+        JavaSyntaxChecker checker;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            checker = new JavaSyntaxChecker(threads, null, 0);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            checker.close();
+        }
+    }
+
+    @Benchmark
+    public void removeImports(Blackhole blackhole) {
+        for (CodeSnippet snippet : snippets)
+            blackhole.consume(JavaSyntaxChecker.removeImports(snippet.code));
+    }
+
+    @Benchmark
+    public void cleanSnippet(Blackhole blackhole) {
+        for (CodeSnippet snippet : snippets)
+            blackhole.consume(JavaSyntaxChecker.cleanSnippet(snippet.code));
+    }
+
+    /**
+     * Includes the warm-up parse of newParser(): it is what every thread pays
+     * before its first snippet.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object newParser() {
+        return JavaSyntaxChecker.newParser();
+    }
+
+    @Benchmark
+    public void parseCorpus(ParserState state, Blackhole blackhole) {
+        for (String code : cleanedCode)
+            blackhole.consume(JavaSyntaxChecker.checkCode(state.parser, code));
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> checkCorpus(CheckerState state) throws IOException {
+        return state.checker.check(snippets);
+    }
+}
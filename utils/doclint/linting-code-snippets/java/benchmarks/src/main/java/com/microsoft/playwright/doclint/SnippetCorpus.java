@@ -0,0 +1,65 @@
+package com.microsoft.playwright.doclint;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Snippets to run the benchmarks on: either a JSON file in the checker input
+ * format or a directory of markdown files such as docs/src, from which the
+ * ```java blocks are collected like doclint does.
+ */
+class SnippetCorpus {
+    private static final Pattern FENCE_START = Pattern.compile("^(\\s*)```java(\\s.*)?$");
+    private static final Pattern FENCE_END = Pattern.compile("^\\s*```\\s*$");
+
+    static List<CodeSnippet> load(Path path) throws IOException {
+        List<CodeSnippet> snippets = Files.isDirectory(path) ? readMarkdown(path) : readJson(path);
+        if (snippets.isEmpty())
+            throw new IOException("No Java snippets found in " + path.toAbsolutePath());
+        return snippets;
+    }
+
+    private static List<CodeSnippet> readJson(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path)) {
+            CodeSnippet[] snippets = new Gson().fromJson(reader, CodeSnippet[].class);
+            return snippets != null ? List.of(snippets) : List.of();
+        }
+    }
+
+    private static List<CodeSnippet> readMarkdown(Path root) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(p -> p.toString().toLowerCase().endsWith(".md")).sorted().collect(Collectors.toList());
+        }
+        List<CodeSnippet> snippets = new ArrayList<>();
+        for (Path file : files) {
+            List<String> code = null;
+            int indent = 0;
+            for (String line : Files.readAllLines(file)) {
+                if (code == null) {
+                    Matcher matcher = FENCE_START.matcher(line);
+                    if (matcher.matches()) {
+                        code = new ArrayList<>();
+                        indent = matcher.group(1).length();
+                    }
+                } else if (FENCE_END.matcher(line).matches()) {
+                    snippets.add(new CodeSnippet(file.toString(), "java", String.join("\n", code)));
+                    code = null;
+                } else {
+                    code.add(line.substring(Math.min(indent, line.length() - line.stripLeading().length())));
+                }
+            }
+        }
+        return snippets;
+    }
+}
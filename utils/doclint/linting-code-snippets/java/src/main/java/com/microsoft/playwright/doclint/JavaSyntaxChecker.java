@@ -0,0 +1,448 @@
+package com.microsoft.playwright.doclint;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.JavaParserBuild;
+import com.github.javaparser.Problem;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.StaticJavaParser;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+public class JavaSyntaxChecker implements AutoCloseable {
+    private static final String THREADS_OPTION = "--threads=";
+    private static final String SERVER_OPTION = "--server";
+    private static final String CACHE_OPTION = "--cache=";
+    private static final String REPORT_OPTION = "--report";
+    private static final int DEFAULT_REPORT_LIMIT = 20;
+    // Bump when cleanSnippet() or the reported errors change, it invalidates cached results.
+    private static final String CHECKER_VERSION = "1";
+    private static final ParserConfiguration.LanguageLevel LANGUAGE_LEVEL = ParserConfiguration.LanguageLevel.JAVA_17;
+    // Enough queued work to keep the threads busy while earlier results are written.
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    private final ThreadLocal<JavaParser> parser;
+    private final int threads;
+    private final ExecutorService executor;
+    private final ResultCache cache;
+    // Number of slowest snippets to report after every batch, 0 disables the report.
+    private final int reportLimit;
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean server = false;
+        Path cachePath = null;
+        int reportLimit = 0;
+        String codeSnippetsPath = null;
+        for (String arg : args) {
+            if (arg.startsWith(THREADS_OPTION))
+                threads = Math.max(1, Integer.parseInt(arg.substring(THREADS_OPTION.length())));
+            else if (arg.equals(SERVER_OPTION))
+                server = true;
+            else if (arg.startsWith(CACHE_OPTION))
+                cachePath = Path.of(arg.substring(CACHE_OPTION.length()));
+            else if (arg.equals(REPORT_OPTION))
+                reportLimit = DEFAULT_REPORT_LIMIT;
+            else if (arg.startsWith(REPORT_OPTION + "="))
+                reportLimit = Math.max(1, Integer.parseInt(arg.substring(REPORT_OPTION.length() + 1)));
+            else
+                codeSnippetsPath = arg;
+        }
+
+        if (server) {
+            try (JavaSyntaxChecker checker = new JavaSyntaxChecker(threads, cachePath, reportLimit)) {
+                checker.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                        new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8));
+            }
+            return;
+        }
+
+        if (codeSnippetsPath == null) {
+            System.out.println("Error: Please provide the path to the JSON file");
+            return;
+        }
+
+        InputStream input;
+        try {
+            input = new FileInputStream(codeSnippetsPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error: codeSnippets is null");
+            return;
+        }
+
+        try (JavaSyntaxChecker checker = new JavaSyntaxChecker(threads, cachePath, reportLimit)) {
+            checker.checkStream(input, new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @param threads number of snippets parsed concurrently, each thread keeps its own parser.
+     * @param cachePath optional result cache file, shared by all the processes that use it.
+     * @param reportLimit number of slowest snippets to print to stderr after every batch, 0 for none.
+     */
+    JavaSyntaxChecker(int threads, Path cachePath, int reportLimit) {
+        parser = ThreadLocal.withInitial(JavaSyntaxChecker::newParser);
+        this.threads = threads;
+        executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        cache = cachePath != null ? new ResultCache(cachePath, CHECKER_VERSION + "/" + JavaParserBuild.PROJECT_VERSION + "/" + LANGUAGE_LEVEL) : null;
+        this.reportLimit = reportLimit;
+    }
+
+    /**
+     * Parsers are not shared between threads and neither are their
+     * configurations: the configuration's processors keep per-parse state.
+     *
+     * JavaParser builds its generated parser on the first parse, and the first
+     * parse in the JVM also loads the AST classes. The snippet template is
+     * parsed here so that this cost is part of the parser setup and not of
+     * whichever snippet happens to come first on the thread.
+     */
+    static JavaParser newParser() {
+        ParserConfiguration config = new ParserConfiguration();
+        config.setLanguageLevel(LANGUAGE_LEVEL);
+        JavaParser parser = new JavaParser(config);
+        parser.parse(cleanSnippet(""));
+        return parser;
+    }
+
+    interface SnippetSource {
+        /**
+         * Returns null after the last snippet.
+         */
+        CodeSnippet next() throws IOException;
+    }
+
+    interface ResultSink {
+        void accept(Map<String, Object> result) throws IOException;
+    }
+
+    private static class PendingResult {
+        final ByteBuffer key;
+        final Future<Map<String, Object>> result;
+        final boolean cached;
+
+        PendingResult(ByteBuffer key, Future<Map<String, Object>> result, boolean cached) {
+            this.key = key;
+            this.result = result;
+            this.cached = cached;
+        }
+    }
+
+    /**
+     * Checks the snippets as they are read and hands each result to the sink
+     * in input order, as soon as it and all the results before it are ready.
+     * Only a few snippets per thread are in flight, so memory doesn't grow
+     * with the input. Snippets found in the cache are not parsed at all.
+     */
+    void check(SnippetSource source, ResultSink sink) throws IOException {
+        int window = executor != null ? threads * IN_FLIGHT_PER_THREAD : 1;
+        SnippetReport report = reportLimit > 0 ? new SnippetReport() : null;
+        ArrayDeque<PendingResult> inFlight = new ArrayDeque<>();
+        int count = 0;
+        CodeSnippet codeSnippet;
+        while ((codeSnippet = source.next()) != null) {
+            if (inFlight.size() >= window)
+                complete(inFlight.poll(), sink);
+            inFlight.add(submit(codeSnippet, report));
+            count++;
+        }
+        while (!inFlight.isEmpty())
+            complete(inFlight.poll(), sink);
+        if (count == 0)
+            return;
+
+        if (report != null)
+            report.print(System.err, reportLimit);
+
+        if (cache != null) {
+            System.err.println(cache.takeSummary());
+            try {
+                cache.flush();
+            } catch (IOException e) {
+                System.err.println("Unable to save the snippet cache: " + e);
+            }
+        }
+    }
+
+    /**
+     * Results are in the same order as the snippets.
+     */
+    List<Map<String, Object>> check(List<CodeSnippet> codeSnippets) throws IOException {
+        List<Map<String, Object>> output = new ArrayList<>();
+        Iterator<CodeSnippet> it = codeSnippets.iterator();
+        check(() -> it.hasNext() ? it.next() : null, output::add);
+        return output;
+    }
+
+    /**
+     * Streams a JSON array of snippets to a JSON array of results, each result
+     * is written out as soon as it is known.
+     */
+    void checkStream(InputStream input, Writer out) throws IOException {
+        Gson gson = new Gson();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            JsonWriter writer = newJsonWriter(out);
+            reader.beginArray();
+            writer.beginArray();
+            check(() -> reader.hasNext() ? gson.fromJson(reader, CodeSnippet.class) : null, result -> {
+                writeResult(writer, result);
+                writer.flush();
+            });
+            reader.endArray();
+            writer.endArray();
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    /**
+     * Server mode: every input line is a JSON array of snippets and is answered
+     * with one line per snippet holding its result object, in input order and
+     * flushed as soon as it is known. The line is parsed one snippet at a time
+     * while it is checked, so memory doesn't grow with the batch. If the batch
+     * turns out to be malformed, the results already sent are followed by a
+     * line with an object holding only an "error" and the rest of the line is
+     * skipped. An empty batch gets no answer. Runs until the input is closed,
+     * the threads and their parsers stay warm between batches.
+     */
+    void serve(BufferedReader in, Writer out) throws IOException {
+        Gson gson = new Gson();
+        LineReader line = new LineReader(in);
+        while (line.startLine()) {
+            JsonReader reader = new JsonReader(line);
+            try {
+                reader.beginArray();
+                check(() -> reader.hasNext() ? gson.fromJson(reader, CodeSnippet.class) : null, result -> {
+                    // A JsonWriter takes a single top-level value.
+                    writeResult(newJsonWriter(out), result);
+                    out.write('\n');
+                    out.flush();
+                });
+                reader.endArray();
+                if (reader.peek() != JsonToken.END_DOCUMENT)
+                    throw new JsonParseException("Expected a single array of snippets");
+            } catch (IOException | JsonParseException | IllegalStateException e) {
+                out.write(gson.toJson(Map.of("error", String.valueOf(e))));
+                out.write('\n');
+                out.flush();
+                line.skipLine();
+            }
+        }
+    }
+
+    /**
+     * Reads a single line of the input and then reports its end, so that a
+     * JsonReader parses the batch as it arrives and never reads into the next one.
+     */
+    private static class LineReader extends Reader {
+        private final Reader in;
+        private int first = -1;
+        private boolean endOfLine = true;
+
+        LineReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * Skips blank lines, returns false at the end of the input.
+         */
+        boolean startLine() throws IOException {
+            do {
+                first = in.read();
+            } while (first == '\n' || first == '\r' || first == ' ' || first == '\t');
+            endOfLine = first == -1;
+            return first != -1;
+        }
+
+        void skipLine() throws IOException {
+            while (!endOfLine) {
+                int c = in.read();
+                endOfLine = c == -1 || c == '\n';
+            }
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (endOfLine)
+                return -1;
+            int n = 0;
+            if (first != -1) {
+                cbuf[off + n++] = (char) first;
+                first = -1;
+            }
+            while (n < len) {
+                int c = in.read();
+                if (c == -1 || c == '\n') {
+                    endOfLine = true;
+                    break;
+                }
+                cbuf[off + n++] = (char) c;
+            }
+            return n == 0 ? -1 : n;
+        }
+
+        @Override
+        public void close() {
+            // The input stays open for the next line.
+        }
+    }
+
+    private PendingResult submit(CodeSnippet codeSnippet, SnippetReport report) {
+        SnippetReport.Entry entry = report != null ? new SnippetReport.Entry(codeSnippet.filePath, codeSnippet.code) : null;
+        long start = System.nanoTime();
+        String cleanedCode = cleanSnippet(codeSnippet.code);
+        if (entry != null)
+            entry.cleanNanos = System.nanoTime() - start;
+        ByteBuffer key = cache != null ? cache.key(cleanedCode) : null;
+        Map<String, Object> cached = key != null ? cache.get(key) : null;
+        if (cached != null) {
+            if (report != null)
+                report.addCached();
+            return new PendingResult(key, CompletableFuture.completedFuture(cached), true);
+        }
+        if (executor == null)
+            return new PendingResult(key, CompletableFuture.completedFuture(checkCode(cleanedCode, entry, report)), false);
+        return new PendingResult(key, executor.submit(() -> checkCode(cleanedCode, entry, report)), false);
+    }
+
+    private Map<String, Object> checkCode(String cleanedCode, SnippetReport.Entry entry, SnippetReport report) {
+        if (entry == null)
+            return checkCode(parser.get(), cleanedCode);
+        long start = System.nanoTime();
+        JavaParser parser = this.parser.get();
+        long parseStart = System.nanoTime();
+        long allocated = SnippetReport.allocatedBytes();
+        Map<String, Object> result = checkCode(parser, cleanedCode);
+        entry.parseNanos = System.nanoTime() - parseStart;
+        entry.parserNanos = parseStart - start;
+        if (allocated >= 0)
+            entry.allocatedBytes = SnippetReport.allocatedBytes() - allocated;
+        report.add(entry);
+        return result;
+    }
+
+    private void complete(PendingResult pending, ResultSink sink) throws IOException {
+        Map<String, Object> result;
+        try {
+            result = pending.result.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+        if (cache != null && !pending.cached)
+            cache.put(pending.key, result);
+        sink.accept(result);
+    }
+
+    private static JsonWriter newJsonWriter(Writer out) {
+        JsonWriter writer = new JsonWriter(out);
+        // Same escaping as Gson.toJson(), the output stays byte for byte the same.
+        writer.setHtmlSafe(true);
+        return writer;
+    }
+
+    private static void writeResult(JsonWriter writer, Map<String, Object> result) throws IOException {
+        writer.beginObject();
+        writer.name("status").value((String) result.get("status"));
+        Object error = result.get("error");
+        if (error != null)
+            writer.name("error").value(error.toString());
+        writer.endObject();
+    }
+
+    @Override
+    public void close() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    static Map<String, Object> checkCode(JavaParser parser, String cleanedCode) {
+        ParseResult<CompilationUnit> parseResult = parser.parse(cleanedCode);
+        List<Problem> syntaxErrors = parseResult.getProblems();
+
+        if (!syntaxErrors.isEmpty()) {
+            return Map.of(
+                "status", "error",
+                "error", String.join("\n", syntaxErrors.stream()
+                        .map(Problem::getMessage)
+                        .collect(Collectors.toList()))
+            );
+        }
+        return Map.of("status", "ok");
+    }
+
+    static String removeImports(String code) {
+        // Remove import statements
+        return Pattern.compile("^import.*;$", Pattern.MULTILINE)
+                      .matcher(code)
+                      .replaceAll("");
+    }
+
+    static String cleanSnippet(String code) {
+        // if it contains "public class" then it's a full class, return immediately
+        if (code.contains("public class")) {
+            return code;
+        }
+        code = removeImports(code);
+        String wrappedCode = """
+            import com.microsoft.playwright.*;
+            import static com.microsoft.playwright.assertions.PlaywrightAssertions.*;
+            
+            public class Example {
+                public static void main(String[] args) {
+                    try (Playwright playwright = Playwright.create()) {
+                        Browser browser = playwright.chromium().launch();
+                        BrowserContext context = browser.newContext();
+                        Page page = context.newPage();
+                        %s
+                    }
+                }
+            }
+            """.formatted(code);
+        return wrappedCode;
+    }
+}
+
+class CodeSnippet {
+    String filePath;
+    String codeLang;
+    String code;
+
+    public CodeSnippet(String filePath, String codeLang, String code) {
+        this.filePath = filePath;
+        this.codeLang = codeLang;
+        this.code = code;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,194 @@
+package com.microsoft.playwright.doclint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of snippet results, keyed by the SHA-256 of the code that
+ * is parsed and of everything else that can change the result.
+ *
+ * The file is a gzipped list of records: the 32-byte key, the status and, for
+ * failed snippets, the error. It is never modified in place. Writers lock a
+ * sibling ".lock" file, merge their results into the latest contents and
+ * atomically replace the file, so concurrent processes neither lose each
+ * other's results nor read a partially written file.
+ *
+ * Not thread safe, the checker uses it from the thread that runs the batch.
+ */
+class ResultCache {
+    private static final int MAGIC = 0x4a534331;
+    private static final int MAX_ENTRIES = 100_000;
+    private static final byte STATUS_OK = 0;
+    private static final byte STATUS_ERROR = 1;
+
+    private final Path path;
+    private final byte[] salt;
+    private final Map<ByteBuffer, Map<String, Object>> entries;
+    // Entries looked up or added by this process, they survive pruning first.
+    private final Map<ByteBuffer, Map<String, Object>> used = new LinkedHashMap<>();
+    private boolean dirty;
+    private int hits;
+    private int misses;
+
+    /**
+     * @param salt checker version, language level and anything else the results depend on.
+     */
+    ResultCache(Path path, String salt) {
+        this.path = path;
+        this.salt = salt.getBytes(StandardCharsets.UTF_8);
+        Map<ByteBuffer, Map<String, Object>> entries;
+        try {
+            entries = read(path);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable snippet cache " + path + ": " + e);
+            entries = new HashMap<>();
+        }
+        this.entries = entries;
+    }
+
+    ByteBuffer key(String cleanedCode) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            digest.update((byte) 0);
+            digest.update(cleanedCode.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns null on a miss.
+     */
+    Map<String, Object> get(ByteBuffer key) {
+        Map<String, Object> result = entries.get(key);
+        if (result == null) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        used.put(key, result);
+        return result;
+    }
+
+    void put(ByteBuffer key, Map<String, Object> result) {
+        entries.put(key, result);
+        used.put(key, result);
+        dirty = true;
+    }
+
+    /**
+     * Hits and misses since the last call, so that every batch of a server reports its own.
+     */
+    String takeSummary() {
+        String summary = "Java snippet cache: " + hits + " hits, " + misses + " misses";
+        hits = 0;
+        misses = 0;
+        return summary;
+    }
+
+    /**
+     * Merges the new results into the cache file, does nothing if there are none.
+     */
+    void flush() throws IOException {
+        if (!dirty)
+            return;
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path lockPath = parent.resolve(path.getFileName() + ".lock");
+        try (FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                Map<ByteBuffer, Map<String, Object>> merged = new LinkedHashMap<>(used);
+                Map<ByteBuffer, Map<String, Object>> current;
+                try {
+                    current = read(path);
+                } catch (IOException e) {
+                    current = entries;
+                }
+                for (Map.Entry<ByteBuffer, Map<String, Object>> entry : current.entrySet()) {
+                    if (merged.size() >= MAX_ENTRIES)
+                        break;
+                    merged.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+                Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+                try {
+                    write(temp, merged);
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                entries.putAll(merged);
+            } finally {
+                lock.release();
+            }
+        }
+        dirty = false;
+    }
+
+    private static Map<ByteBuffer, Map<String, Object>> read(Path path) throws IOException {
+        Map<ByteBuffer, Map<String, Object>> result = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a snippet cache file");
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                byte[] key = new byte[32];
+                in.readFully(key);
+                byte status = in.readByte();
+                if (status == STATUS_OK) {
+                    result.put(ByteBuffer.wrap(key), Map.of("status", "ok"));
+                } else {
+                    byte[] error = new byte[in.readInt()];
+                    in.readFully(error);
+                    result.put(ByteBuffer.wrap(key), Map.of("status", "error", "error", new String(error, StandardCharsets.UTF_8)));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // First run.
+        } catch (EOFException e) {
+            throw new IOException("Truncated snippet cache file", e);
+        }
+        return result;
+    }
+
+    private static void write(Path path, Map<ByteBuffer, Map<String, Object>> entries) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<ByteBuffer, Map<String, Object>> entry : entries.entrySet()) {
+                out.write(entry.getKey().array());
+                Object error = entry.getValue().get("error");
+                if (error == null) {
+                    out.writeByte(STATUS_OK);
+                } else {
+                    byte[] bytes = error.toString().getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(STATUS_ERROR);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.microsoft.playwright.doclint;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per-snippet timings collected with the --report option, to see where the
+ * lint time goes and which snippets are the slowest to check.
+ *
+ * Times are wall clock on the thread that did the work and are summed over
+ * threads. Allocations come from the JVM per-thread counters and are reported
+ * as unknown on JVMs that don't support them.
+ *
+ * Thread safe, snippets are parsed on the pool threads.
+ */
+class SnippetReport {
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounters();
+    private static final int MAX_LINE_LENGTH = 60;
+
+    static class Entry {
+        final String filePath;
+        // Tells apart the snippets of the same file.
+        final String firstLine;
+        long cleanNanos;
+        // Time to get the thread's parser, includes its creation and warm-up parse for the first snippet on a thread.
+        long parserNanos;
+        long parseNanos;
+        long allocatedBytes = -1;
+
+        Entry(String filePath, String code) {
+            this.filePath = filePath;
+            this.firstLine = code.strip().lines().findFirst().orElse("");
+        }
+
+        long checkNanos() {
+            return cleanNanos + parseNanos;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private int cached;
+
+    synchronized void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    synchronized void addCached() {
+        ++cached;
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 if unknown.
+     */
+    static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    synchronized void print(PrintStream out, int limit) {
+        long clean = 0;
+        long parser = 0;
+        long parse = 0;
+        long allocated = 0;
+        for (Entry entry : entries) {
+            clean += entry.cleanNanos;
+            parser += entry.parserNanos;
+            parse += entry.parseNanos;
+            allocated = allocated < 0 || entry.allocatedBytes < 0 ? -1 : allocated + entry.allocatedBytes;
+        }
+        out.println(String.format("Java snippet report: %d parsed, %d cached, cleanSnippet %s, parser setup %s, parsing %s, allocated %s",
+                entries.size(), cached, millis(clean), millis(parser), millis(parse), megabytes(allocated)));
+        if (entries.isEmpty())
+            return;
+
+        List<Entry> slowest = new ArrayList<>(entries);
+        slowest.sort(Comparator.comparingLong(Entry::checkNanos).reversed());
+        out.println("Slowest snippets:");
+        for (Entry entry : slowest.subList(0, Math.min(limit, slowest.size())))
+            out.println(String.format("  %10s %10s  %s: %s", millis(entry.checkNanos()), megabytes(entry.allocatedBytes), entry.filePath, abbreviate(entry.firstLine)));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f ms", nanos / 1e6);
+    }
+
+    private static String abbreviate(String line) {
+        return line.length() > MAX_LINE_LENGTH ? line.substring(0, MAX_LINE_LENGTH) + "..." : line;
+    }
+
+    private static String megabytes(long bytes) {
+        return bytes < 0 ? "?" : String.format("%.2f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounters() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+        if (!counters.isThreadAllocatedMemorySupported())
+            return null;
+        counters.setThreadAllocatedMemoryEnabled(true);
+        return counters;
+    }
+}